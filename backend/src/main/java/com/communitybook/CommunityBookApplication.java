@@ -2,8 +2,10 @@ package com.communitybook;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.scheduling.annotation.EnableScheduling;
 
 @SpringBootApplication
+@EnableScheduling // background jobs such as archiving aged listings
 public class CommunityBookApplication {
 
 	public static void main(String[] args) {
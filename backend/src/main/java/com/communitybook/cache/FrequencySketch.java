@@ -0,0 +1,65 @@
+package com.communitybook.cache;
+
+// A small count-min sketch that estimates how often each key has been requested recently.
+// Counters saturate at 15 and are all halved once enough increments have been recorded,
+// so old popularity fades out and a one-off scan never looks "hot".
+// Not thread-safe: callers guard it with their own lock.
+final class FrequencySketch {
+
+    private static final int MAX_COUNT = 15;
+    private static final long[] SEEDS = {
+        0x9E3779B97F4A7C15L, 0xC2B2AE3D27D4EB4FL, 0x165667B19E3779F9L, 0xD6E8FEB86659FD93L
+    };
+
+    private final byte[][] table;
+    private final int mask;
+    private final int sampleSize;
+    private int additions;
+
+    FrequencySketch(int expectedEntries) {
+        int width = Integer.highestOneBit(Math.max(64, expectedEntries * 8) - 1) << 1;
+        this.table = new byte[SEEDS.length][width];
+        this.mask = width - 1;
+        this.sampleSize = 10 * width;
+    }
+
+    void increment(long key) {
+        boolean added = false;
+        for (int row = 0; row < SEEDS.length; row++) {
+            int index = indexOf(key, row);
+            if (table[row][index] < MAX_COUNT) {
+                table[row][index]++;
+                added = true;
+            }
+        }
+        if (added && ++additions >= sampleSize) {
+            age();
+        }
+    }
+
+    int frequency(long key) {
+        int min = MAX_COUNT;
+        for (int row = 0; row < SEEDS.length; row++) {
+            min = Math.min(min, table[row][indexOf(key, row)]);
+        }
+        return min;
+    }
+
+    // Halve every counter so the sketch tracks recent popularity rather than all-time totals
+    private void age() {
+        for (byte[] row : table) {
+            for (int i = 0; i < row.length; i++) {
+                row[i] = (byte) (row[i] >>> 1);
+            }
+        }
+        additions /= 2;
+    }
+
+    private int indexOf(long key, int row) {
+        long hash = (key + SEEDS[row]) * SEEDS[(row + 1) % SEEDS.length];
+        hash ^= hash >>> 32;
+        hash *= 0x94D049BB133111EBL;
+        hash ^= hash >>> 29;
+        return (int) hash & mask;
+    }
+}
@@ -0,0 +1,258 @@
+package com.communitybook.cache;
+
+import com.communitybook.event.BookChangedEvent;
+import com.communitybook.model.Book;
+import com.communitybook.model.BookType;
+import com.communitybook.resilience.ReadDegradation;
+import com.communitybook.resilience.ServiceDegradedException;
+import com.communitybook.service.BookService;
+import com.communitybook.service.CatalogVersion;
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.util.DigestUtils;
+
+import java.io.UncheckedIOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+
+// Keeps the already-encoded JSON of each listing endpoint (all books, books by type) in memory.
+// The catalog only changes a few times a minute, so most requests can be answered with the same bytes.
+//
+// Each snapshot remembers the catalog version it was built at. A write through BookService bumps the
+// version and queues a rebuild on a single background thread; until it finishes, readers keep getting
+// the previous snapshot (stale-while-revalidate), so no request ever queries the database for a variant
+// that has been built once. Only the very first request for a variant waits: it builds the snapshot
+// itself, and concurrent first requests wait for that build instead of querying too. Changes arriving while a rebuild is queued collapse into it, so a burst of
+// writes costs at most one running and one queued rebuild per variant.
+// If the database cannot be reached (or its circuit breaker is open), the previous snapshot is served
+// marked as stale until a rebuild succeeds.
+@Component
+public class ListingSnapshots {
+
+    private static final Logger log = LoggerFactory.getLogger(ListingSnapshots.class);
+
+    private static final String ALL_BOOKS = "all";
+
+    @Autowired
+    private BookService bookService;
+
+    @Autowired
+    private ObjectMapper objectMapper;
+
+    @Autowired
+    private CatalogVersion catalogVersion;
+
+    @Autowired
+    private ReadDegradation readDegradation;
+
+    private final Map<String, Variant> variants = new ConcurrentHashMap<>();
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "listing-snapshot-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public Snapshot allBooks() {
+        return get(ALL_BOOKS);
+    }
+
+    public Snapshot booksByType(BookType type) {
+        return get("type:" + type.name());
+    }
+
+    public void clear() {
+        variants.clear();
+    }
+
+    // Rebuild every variant that has been requested so far; variants nobody asked for are built on first use
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        for (Variant variant : variants.values()) {
+            variant.scheduleRebuild();
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    private Snapshot get(String name) {
+        Variant variant = variants.computeIfAbsent(name, Variant::new);
+        Snapshot snapshot = variant.snapshot;
+        if (snapshot == null) {
+            return variant.awaitFirstBuild();
+        }
+        if (snapshot.isStale() || snapshot.getVersion() < catalogVersion.current()) {
+            // Normally already queued by the change event; this retries a rebuild that failed
+            variant.scheduleRebuild();
+        }
+        if (snapshot.isStale()) {
+            readDegradation.recordStaleResponse(endpointOf(name));
+        }
+        return snapshot;
+    }
+
+    // One listing endpoint: its latest snapshot plus the rebuilds in flight for it
+    private final class Variant {
+
+        private final String name;
+        private volatile Snapshot snapshot;
+        // Guarded by "this": a rebuild that has been queued but not started yet, and the latest one started
+        private CompletableFuture<Snapshot> queued;
+        private CompletableFuture<Snapshot> latest;
+
+        Variant(String name) {
+            this.name = name;
+        }
+
+        // Queues a rebuild unless one is already waiting to start; a running one may have read the catalog
+        // before the change that triggered this call, so it does not count
+        synchronized CompletableFuture<Snapshot> scheduleRebuild() {
+            if (queued != null) {
+                return queued;
+            }
+            CompletableFuture<Snapshot> future = new CompletableFuture<>();
+            queued = future;
+            latest = future;
+            try {
+                rebuildExecutor.execute(() -> run(future));
+            } catch (RejectedExecutionException e) {
+                queued = null;
+                future.completeExceptionally(e);
+            }
+            return future;
+        }
+
+        Snapshot awaitFirstBuild() {
+            CompletableFuture<Snapshot> build;
+            boolean buildHere = false;
+            synchronized (this) {
+                if (latest != null && !latest.isDone()) {
+                    build = latest;
+                } else {
+                    build = new CompletableFuture<>();
+                    latest = build;
+                    buildHere = true;
+                }
+            }
+            if (buildHere) {
+                run(build);
+            }
+            try {
+                return build.join();
+            } catch (CompletionException e) {
+                if (e.getCause() instanceof RuntimeException cause) {
+                    throw cause;
+                }
+                throw e;
+            }
+        }
+
+        private void run(CompletableFuture<Snapshot> future) {
+            synchronized (this) {
+                if (queued == future) {
+                    queued = null;
+                }
+            }
+            try {
+                future.complete(rebuild());
+            } catch (ServiceDegradedException | DataAccessException e) {
+                Snapshot previous = snapshot;
+                if (previous != null) {
+                    log.warn("Could not rebuild listing snapshot '{}', serving the previous one as stale ({})",
+                            name, e.getMessage());
+                    snapshot = previous.asStale();
+                }
+                future.completeExceptionally(e);
+            } catch (RuntimeException e) {
+                log.warn("Could not rebuild listing snapshot '{}'", name, e);
+                future.completeExceptionally(e);
+            }
+        }
+
+        // Runs on the rebuild thread only
+        private Snapshot rebuild() {
+            // Read the version before querying, so the snapshot can only ever look older than it is, never newer
+            long version = catalogVersion.current();
+            Snapshot current = snapshot;
+            if (current != null && current.getVersion() >= version && !current.isStale()) {
+                return current;
+            }
+            List<Book> books = readDegradation.call(endpointOf(name), () -> load(name));
+            Snapshot fresh = new Snapshot(version, encode(books), System.currentTimeMillis(), false);
+            snapshot = fresh;
+            return fresh;
+        }
+    }
+
+    private List<Book> load(String variant) {
+        if (variant.equals(ALL_BOOKS)) {
+            return bookService.getAllBooks();
+        }
+        return bookService.getBooksByType(BookType.valueOf(variant.substring("type:".length())));
+    }
+
+    private static String endpointOf(String variant) {
+        return variant.equals(ALL_BOOKS) ? "getAllBooks" : "getBooksByType";
+    }
+
+    private byte[] encode(List<Book> books) {
+        try {
+            return objectMapper.writeValueAsBytes(books);
+        } catch (JsonProcessingException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    public static class Snapshot {
+
+        private final long version;
+        private final byte[] body;
+        private final String eTag;
+        private final long builtAtMillis;
+        private final boolean stale;
+
+        Snapshot(long version, byte[] body, long builtAtMillis, boolean stale) {
+            this(version, body, builtAtMillis, stale,
+                    // Derived from the content, so it stays valid across restarts and across backend instances
+                    "\"" + DigestUtils.md5DigestAsHex(body) + "\"");
+        }
+
+        private Snapshot(long version, byte[] body, long builtAtMillis, boolean stale, String eTag) {
+            this.version = version;
+            this.body = body;
+            this.builtAtMillis = builtAtMillis;
+            this.stale = stale;
+            this.eTag = eTag;
+        }
+
+        Snapshot asStale() {
+            return new Snapshot(version, body, builtAtMillis, true, eTag);
+        }
+
+        public long getVersion() { return version; }
+
+        public byte[] getBody() { return body; }
+
+        public String getETag() { return eTag; }
+
+        // True when the catalog has changed since this snapshot was built but it could not be rebuilt
+        public boolean isStale() { return stale; }
+
+        public long getAgeSeconds() { return (System.currentTimeMillis() - builtAtMillis) / 1000; }
+    }
+}
@@ -0,0 +1,350 @@
+package com.communitybook.cache;
+
+import com.communitybook.event.BookChangedEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.io.AbstractResource;
+import org.springframework.http.MediaType;
+import org.springframework.stereotype.Component;
+import org.springframework.util.unit.DataSize;
+
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Keeps the bytes of frequently requested book photos in memory so GET /v1/books/{id}/photo
+// does not have to read the bytea column from Postgres every time.
+//
+// - The cache is bounded by total bytes, not by number of entries.
+// - Image bytes live outside the Java heap, in direct ByteBuffer "slabs" that are carved into
+//   fixed-size blocks. An image occupies as many blocks as it needs, so freed space is always reusable.
+// - New images are only admitted if they have been requested more often than the entries they would
+//   evict (TinyLFU), so a crawler walking the whole catalog once cannot push out the popular covers.
+@Component
+public class PhotoCache implements MeterBinder {
+
+    private static final int SLAB_SIZE = 4 * 1024 * 1024;
+
+    private final boolean enabled;
+    private final int blockSize;
+    private final int blocksPerSlab;
+    private final int maxBlocks;
+    private final long maxEntryBytes;
+    private final ByteBuffer[] slabs;
+
+    // Guarded by "this"
+    private final LinkedHashMap<Long, Entry> entries = new LinkedHashMap<>(64, 0.75f, true); // access order = LRU
+    private final FrequencySketch sketch;
+    private int[] freeBlocks;
+    private int freeCount;
+    private int carvedBlocks;
+    private long residentBytes;
+
+    private final AtomicLong invalidations = new AtomicLong();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final LongAdder rejections = new LongAdder();
+
+    public PhotoCache(@Value("${app.photo-cache.enabled:true}") boolean enabled,
+                      @Value("${app.photo-cache.capacity:64MB}") DataSize capacity,
+                      @Value("${app.photo-cache.block-size:16KB}") DataSize blockSize) {
+        this.enabled = enabled;
+        this.blockSize = (int) blockSize.toBytes();
+        int slabSize = (int) Math.min(SLAB_SIZE, Math.max(capacity.toBytes(), this.blockSize));
+        this.blocksPerSlab = Math.max(1, slabSize / this.blockSize);
+        int slabCount = (int) Math.max(1, capacity.toBytes() / ((long) blocksPerSlab * this.blockSize));
+        this.maxBlocks = slabCount * blocksPerSlab;
+        // A single huge image should never be able to flush the whole cache
+        this.maxEntryBytes = (long) maxBlocks * this.blockSize / 4;
+        this.slabs = new ByteBuffer[slabCount];
+        this.freeBlocks = new int[Math.min(maxBlocks, 1024)];
+        // Assume a typical cover is around 64 KB when sizing the frequency sketch
+        this.sketch = new FrequencySketch((int) Math.max(64, capacity.toBytes() / (64 * 1024)));
+    }
+
+    // Returns the cached photo pinned in memory, or null on a miss. Every lookup, hit or miss,
+    // counts towards the key's popularity. The caller must call release() once the bytes have been written.
+    public CachedPhoto get(Long id) {
+        if (!enabled) {
+            return null;
+        }
+        synchronized (this) {
+            sketch.increment(id);
+            Entry entry = entries.get(id);
+            if (entry == null) {
+                misses.increment();
+                return null;
+            }
+            entry.refCount++;
+            hits.increment();
+            return new CachedPhoto(entry);
+        }
+    }
+
+    // Read this before loading a photo from the database and pass it to put(), so an image that was
+    // invalidated while it was being loaded is not put back into the cache.
+    public long invalidationStamp() {
+        return invalidations.get();
+    }
+
+    public void put(Long id, byte[] data, MediaType contentType, long stamp) {
+        if (!enabled || data.length == 0 || data.length > maxEntryBytes) {
+            return;
+        }
+        int needed = (data.length + blockSize - 1) / blockSize;
+        synchronized (this) {
+            if (stamp != invalidations.get() || entries.containsKey(id)) {
+                return;
+            }
+            // Collect LRU victims until there is room, but give up as soon as one of them is
+            // at least as popular as the newcomer. Entries still being streamed are skipped: evicting
+            // them would not free their blocks until the response is done.
+            int candidateFrequency = sketch.frequency(id);
+            int available = freeCount + (maxBlocks - carvedBlocks);
+            List<Entry> victims = new ArrayList<>();
+            Iterator<Entry> lru = entries.values().iterator();
+            while (available < needed) {
+                if (!lru.hasNext()) {
+                    rejections.increment();
+                    return;
+                }
+                Entry victim = lru.next();
+                if (victim.refCount > 0) {
+                    continue;
+                }
+                if (candidateFrequency <= sketch.frequency(victim.id)) {
+                    rejections.increment();
+                    return;
+                }
+                victims.add(victim);
+                available += victim.blocks.length;
+            }
+            for (Entry victim : victims) {
+                entries.remove(victim.id);
+                retire(victim);
+                evictions.increment();
+            }
+
+            Entry entry = new Entry(id, new int[needed], data.length, contentType);
+            for (int i = 0; i < needed; i++) {
+                int block = allocateBlock();
+                entry.blocks[i] = block;
+                int offset = i * blockSize;
+                blockView(block).put(data, offset, Math.min(blockSize, data.length - offset));
+            }
+            entries.put(id, entry);
+            residentBytes += data.length;
+        }
+    }
+
+    public void invalidate(Long id) {
+        invalidations.incrementAndGet();
+        synchronized (this) {
+            Entry entry = entries.remove(id);
+            if (entry != null) {
+                retire(entry);
+            }
+        }
+    }
+
+    public synchronized void clear() {
+        invalidations.incrementAndGet();
+        for (Entry entry : entries.values()) {
+            retire(entry);
+        }
+        entries.clear();
+    }
+
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.isFullInvalidation()) {
+            clear();
+        } else {
+            invalidate(event.getBookId());
+        }
+    }
+
+    public synchronized long getResidentBytes() {
+        return residentBytes;
+    }
+
+    public synchronized int size() {
+        return entries.size();
+    }
+
+    public double hitRatio() {
+        long hitCount = hits.sum();
+        long total = hitCount + misses.sum();
+        return total == 0 ? 0.0 : (double) hitCount / total;
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("photo.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("photo.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss").register(registry);
+        FunctionCounter.builder("photo.cache.evictions", evictions, LongAdder::sum).register(registry);
+        FunctionCounter.builder("photo.cache.rejections", rejections, LongAdder::sum)
+                .description("Photos not admitted because they were less popular than the entries they would evict")
+                .register(registry);
+        Gauge.builder("photo.cache.hit.ratio", this, PhotoCache::hitRatio).register(registry);
+        Gauge.builder("photo.cache.resident", this, PhotoCache::getResidentBytes)
+                .baseUnit("bytes").register(registry);
+        Gauge.builder("photo.cache.capacity", this, cache -> (double) cache.maxBlocks * cache.blockSize)
+                .baseUnit("bytes").register(registry);
+        Gauge.builder("photo.cache.entries", this, PhotoCache::size).register(registry);
+    }
+
+    // Called with the lock held. Blocks of an entry that is still being streamed are freed by its last release().
+    private void retire(Entry entry) {
+        entry.retired = true;
+        residentBytes -= entry.length;
+        if (entry.refCount == 0) {
+            freeBlocks(entry);
+        }
+    }
+
+    private synchronized void release(Entry entry) {
+        entry.refCount--;
+        if (entry.retired && entry.refCount == 0) {
+            freeBlocks(entry);
+        }
+    }
+
+    private void freeBlocks(Entry entry) {
+        for (int block : entry.blocks) {
+            if (freeCount == freeBlocks.length) {
+                int[] grown = new int[Math.min(maxBlocks, freeBlocks.length * 2)];
+                System.arraycopy(freeBlocks, 0, grown, 0, freeCount);
+                freeBlocks = grown;
+            }
+            freeBlocks[freeCount++] = block;
+        }
+    }
+
+    private int allocateBlock() {
+        if (freeCount > 0) {
+            return freeBlocks[--freeCount];
+        }
+        int block = carvedBlocks++;
+        int slab = block / blocksPerSlab;
+        if (slabs[slab] == null) {
+            // Slabs are allocated lazily so an idle cache does not reserve its full capacity
+            slabs[slab] = ByteBuffer.allocateDirect(blocksPerSlab * blockSize);
+        }
+        return block;
+    }
+
+    // A view over one block. Each caller gets its own position/limit, so concurrent readers never interfere.
+    private ByteBuffer blockView(int block) {
+        ByteBuffer view = slabs[block / blocksPerSlab].duplicate();
+        int offset = (block % blocksPerSlab) * blockSize;
+        view.limit(offset + blockSize).position(offset);
+        return view;
+    }
+
+    private static final class Entry {
+        final Long id;
+        final int[] blocks;
+        final int length;
+        final MediaType contentType;
+        int refCount;
+        boolean retired;
+
+        Entry(Long id, int[] blocks, int length, MediaType contentType) {
+            this.id = id;
+            this.blocks = blocks;
+            this.length = length;
+            this.contentType = contentType;
+        }
+    }
+
+    // A cache hit handed to the HTTP layer as a Resource. Its stream reads straight from the off-heap
+    // blocks in small chunks, so the full image is never copied into a heap byte[].
+    public final class CachedPhoto extends AbstractResource {
+
+        private final Entry entry;
+        private boolean released;
+
+        private CachedPhoto(Entry entry) {
+            this.entry = entry;
+        }
+
+        public MediaType getContentType() {
+            return entry.contentType;
+        }
+
+        public void release() {
+            synchronized (PhotoCache.this) {
+                if (!released) {
+                    released = true;
+                    PhotoCache.this.release(entry);
+                }
+            }
+        }
+
+        @Override
+        public boolean exists() {
+            return true;
+        }
+
+        @Override
+        public long contentLength() {
+            return entry.length;
+        }
+
+        @Override
+        public String getDescription() {
+            return "cached photo for book " + entry.id;
+        }
+
+        @Override
+        public InputStream getInputStream() {
+            return new BlockInputStream();
+        }
+
+        private final class BlockInputStream extends InputStream {
+
+            private int position;
+            private ByteBuffer current;
+
+            @Override
+            public int read() {
+                byte[] single = new byte[1];
+                return read(single, 0, 1) == -1 ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] target, int offset, int length) {
+                if (position >= entry.length) {
+                    return -1;
+                }
+                if (current == null || !current.hasRemaining()) {
+                    int index = position / blockSize;
+                    current = blockView(entry.blocks[index]);
+                    current.limit(current.position() + Math.min(blockSize, entry.length - index * blockSize));
+                }
+                int count = Math.min(length, current.remaining());
+                current.get(target, offset, count);
+                position += count;
+                return count;
+            }
+
+            @Override
+            public int available() {
+                return entry.length - position;
+            }
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package com.communitybook.catalog;
+
+import com.communitybook.model.Book;
+
+import java.util.List;
+
+// One page of browse results, in the shape the frontend's paginated lists expect
+public class BrowsePage {
+
+    private final List<Book> content;
+    private final int page;
+    private final int size;
+    private final long totalElements;
+
+    public BrowsePage(List<Book> content, int page, int size, long totalElements) {
+        this.content = content;
+        this.page = page;
+        this.size = size;
+        this.totalElements = totalElements;
+    }
+
+    public List<Book> getContent() { return content; }
+
+    public int getPage() { return page; }
+
+    public int getSize() { return size; }
+
+    public long getTotalElements() { return totalElements; }
+
+    public int getTotalPages() { return (int) ((totalElements + size - 1) / size); }
+}
@@ -0,0 +1,20 @@
+package com.communitybook.catalog;
+
+import java.util.Locale;
+
+// Sort orders offered by the browse endpoint; ties are broken by listing date, then id
+public enum BrowseSort {
+    NEWEST,
+    OLDEST,
+    PRICE_ASC,
+    PRICE_DESC;
+
+    // Accepts the query parameter form, e.g. "newest" or "price_desc"
+    public static BrowseSort fromParam(String value) {
+        try {
+            return valueOf(value.trim().toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new IllegalArgumentException("Unknown sort '" + value + "', expected one of newest, oldest, price_asc, price_desc");
+        }
+    }
+}
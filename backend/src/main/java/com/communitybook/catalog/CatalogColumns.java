@@ -0,0 +1,472 @@
+package com.communitybook.catalog;
+
+import com.communitybook.model.BookType;
+import com.communitybook.repository.BookBrowseRow;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Immutable column store of the fields browsing filters and sorts on, one primitive array per field.
+//
+// Rows are kept in listing date order (created at, then id), so sorting by date is just walking the rows.
+// The other orders are presorted permutations of row numbers, also split per book type so a type filter
+// never has to skip rows. Every change produces a new instance (copy-on-write): readers never lock and
+// always see a consistent set of arrays. Only a full load sorts; a single insert or removal finds its
+// place in each order by binary search and splices it in while copying, so a write costs O(n) array
+// copying, which is fine at a few writes per minute.
+final class CatalogColumns {
+
+    // Filter value meaning "no filter"
+    static final int ANY = -1;
+    // Author code for a name no listing has, so nothing can match
+    static final int UNKNOWN_AUTHOR = -2;
+
+    private static final BookType[] TYPES = BookType.values();
+
+    private final int size;
+    private final long[] ids;
+    private final long[] createdAt;
+    private final long[] priceCents;
+    private final byte[] types;
+    private final int[] authors;
+
+    // Authors are dictionary-encoded: the column holds a code into authorNames. Names only ever get added
+    // (a name whose last listing is gone stays until the next full load), so codes never change meaning.
+    private final String[] authorNames;
+    private final Map<String, Integer> authorCodes;
+
+    private final int[] byDate;
+    private final int[] byPrice;
+    private final int[][] byDateOfType;
+    private final int[][] byPriceOfType;
+    private final int[] byId;
+
+    private CatalogColumns(int size, long[] ids, long[] createdAt, long[] priceCents, byte[] types, int[] authors,
+                           String[] authorNames, Map<String, Integer> authorCodes,
+                           int[] byPrice, int[] byId, int[][] byDateOfType, int[][] byPriceOfType) {
+        this.size = size;
+        this.ids = ids;
+        this.createdAt = createdAt;
+        this.priceCents = priceCents;
+        this.types = types;
+        this.authors = authors;
+        this.authorNames = authorNames;
+        this.authorCodes = authorCodes;
+        this.byDate = identity(size);
+        this.byPrice = byPrice;
+        this.byId = byId;
+        this.byDateOfType = byDateOfType;
+        this.byPriceOfType = byPriceOfType;
+    }
+
+    static CatalogColumns of(List<? extends BookBrowseRow> rows) {
+        int size = rows.size();
+        long[] ids = new long[size];
+        long[] createdAt = new long[size];
+        long[] priceCents = new long[size];
+        byte[] types = new byte[size];
+        int[] authors = new int[size];
+        List<String> authorNames = new ArrayList<>();
+        Map<String, Integer> authorCodes = new HashMap<>();
+        for (int i = 0; i < size; i++) {
+            BookBrowseRow row = rows.get(i);
+            ids[i] = row.getId();
+            createdAt[i] = epochMillis(row.getCreatedAt());
+            priceCents[i] = cents(row.getPrice());
+            types[i] = (byte) row.getType().ordinal();
+            authors[i] = authorCodes.computeIfAbsent(normalize(row.getAuthor()), key -> {
+                authorNames.add(row.getAuthor());
+                return authorNames.size() - 1;
+            });
+        }
+        // Put the rows in (created at, id) order: sort by id, then stable sort by date
+        int[] order = identity(size);
+        order = sortRows(sortRows(order, ids), createdAt);
+        long[] sortedIds = permute(ids, order);
+        long[] sortedPrices = permute(priceCents, order);
+        byte[] sortedTypes = permute(types, order);
+
+        int[] byDate = identity(size);
+        // Stable, so listings with the same price stay in date order: byPrice is ordered by (price, row)
+        int[] byPrice = sortRows(byDate, sortedPrices);
+        return new CatalogColumns(size, sortedIds, permute(createdAt, order), sortedPrices, sortedTypes,
+                permute(authors, order), authorNames.toArray(new String[0]), authorCodes,
+                byPrice, sortRows(byDate, sortedIds),
+                splitByType(byDate, sortedTypes), splitByType(byPrice, sortedTypes));
+    }
+
+    int size() {
+        return size;
+    }
+
+    // Rough heap footprint of the arrays (the dictionary is counted at ~48 bytes per name)
+    long estimatedBytes() {
+        return size * (8L + 8 + 8 + 1 + 4 + 4 * 5) + authorNames.length * 48L;
+    }
+
+    boolean contains(long id) {
+        return rowOf(id) >= 0;
+    }
+
+    int authorCode(String author) {
+        Integer code = authorCodes.get(normalize(author));
+        return code == null ? UNKNOWN_AUTHOR : code;
+    }
+
+    // A copy with the given listing added, or replaced if its id is already present
+    CatalogColumns with(BookBrowseRow row) {
+        CatalogColumns base = contains(row.getId()) ? without(row.getId()) : this;
+        return base.insert(row);
+    }
+
+    // A copy without the given listing (or this instance if it is not present)
+    CatalogColumns without(long id) {
+        int removed = rowOf(id);
+        if (removed < 0) {
+            return this;
+        }
+        int type = types[removed];
+        int[][] dateOfType = new int[TYPES.length][];
+        int[][] priceOfType = new int[TYPES.length][];
+        for (int t = 0; t < TYPES.length; t++) {
+            dateOfType[t] = spliceOut(byDateOfType[t], t == type ? rowPosition(byDateOfType[t], removed) : -1, removed);
+            priceOfType[t] = spliceOut(byPriceOfType[t],
+                    t == type ? pricePosition(byPriceOfType[t], priceCents[removed], removed) : -1, removed);
+        }
+        return new CatalogColumns(size - 1, remove(ids, removed), remove(createdAt, removed),
+                remove(priceCents, removed), remove(types, removed), remove(authors, removed),
+                authorNames, authorCodes,
+                spliceOut(byPrice, pricePosition(byPrice, priceCents[removed], removed), removed),
+                spliceOut(byId, idPosition(id), removed), dateOfType, priceOfType);
+    }
+
+    // Ids of one page of listings matching the filters (ANY = no filter), plus the number of matches overall
+    CatalogIndex.Result query(int type, int author, BrowseSort sort, int offset, int limit) {
+        if (author == UNKNOWN_AUTHOR) {
+            return new CatalogIndex.Result(new long[0], 0);
+        }
+        boolean byDateOrder = sort == BrowseSort.NEWEST || sort == BrowseSort.OLDEST;
+        boolean descending = sort == BrowseSort.NEWEST || sort == BrowseSort.PRICE_DESC;
+        int[] rows = type == ANY
+                ? (byDateOrder ? byDate : byPrice)
+                : (byDateOrder ? byDateOfType[type] : byPriceOfType[type]);
+        int length = rows.length;
+
+        if (author == ANY) {
+            int end = (int) Math.min((long) offset + limit, length);
+            long[] page = new long[Math.max(0, end - offset)];
+            for (int i = offset; i < end; i++) {
+                page[i - offset] = ids[rows[descending ? length - 1 - i : i]];
+            }
+            return new CatalogIndex.Result(page, length);
+        }
+
+        // An author filter is a linear scan over the chosen order, comparing int codes only
+        long[] page = new long[limit];
+        int collected = 0;
+        int matches = 0;
+        for (int i = 0; i < length; i++) {
+            int row = rows[descending ? length - 1 - i : i];
+            if (authors[row] != author) {
+                continue;
+            }
+            if (matches >= offset && collected < limit) {
+                page[collected++] = ids[row];
+            }
+            matches++;
+        }
+        return new CatalogIndex.Result(Arrays.copyOf(page, collected), matches);
+    }
+
+    private CatalogColumns insert(BookBrowseRow row) {
+        long id = row.getId();
+        long created = epochMillis(row.getCreatedAt());
+        // First row that sorts after the new one
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (createdAt[mid] < created || (createdAt[mid] == created && ids[mid] < id)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        long price = cents(row.getPrice());
+        int type = row.getType().ordinal();
+        Dictionary dictionary = new Dictionary(authorNames, authorCodes);
+        int author = dictionary.codeOf(row.getAuthor());
+
+        // The new row takes number lo, so existing rows from lo on move up by one in every order
+        int[][] dateOfType = new int[TYPES.length][];
+        int[][] priceOfType = new int[TYPES.length][];
+        for (int t = 0; t < TYPES.length; t++) {
+            dateOfType[t] = spliceIn(byDateOfType[t], t == type ? rowPosition(byDateOfType[t], lo) : -1, lo);
+            priceOfType[t] = spliceIn(byPriceOfType[t],
+                    t == type ? pricePosition(byPriceOfType[t], price, lo) : -1, lo);
+        }
+        return new CatalogColumns(size + 1, insert(ids, lo, id), insert(createdAt, lo, created),
+                insert(priceCents, lo, price), insert(types, lo, (byte) type),
+                insert(authors, lo, author), dictionary.names, dictionary.codes,
+                spliceIn(byPrice, pricePosition(byPrice, price, lo), lo),
+                spliceIn(byId, idPosition(id), lo), dateOfType, priceOfType);
+    }
+
+    private int rowOf(long id) {
+        int at = idPosition(id);
+        return at < size && ids[byId[at]] == id ? byId[at] : -1;
+    }
+
+    // Position of the first entry in byId whose id is not below the given one
+    private int idPosition(long id) {
+        int lo = 0;
+        int hi = size;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (ids[byId[mid]] < id) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Position of the first entry of a price order (sorted by price, then row) not below (price, row).
+    // When inserting, row is the new row's number: existing rows below it sort before it on a price tie,
+    // the ones at or above it are about to move up and sort after it.
+    private int pricePosition(int[] order, long price, int row) {
+        int lo = 0;
+        int hi = order.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            int midRow = order[mid];
+            if (priceCents[midRow] < price || (priceCents[midRow] == price && midRow < row)) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Position of the first entry of a date order (sorted by row) not below the given row
+    private static int rowPosition(int[] order, int row) {
+        int lo = 0;
+        int hi = order.length;
+        while (lo < hi) {
+            int mid = (lo + hi) >>> 1;
+            if (order[mid] < row) {
+                lo = mid + 1;
+            } else {
+                hi = mid;
+            }
+        }
+        return lo;
+    }
+
+    // Copy of an order with rows from the given one on renumbered up by one, and the row itself placed
+    // at position at (or not placed at all when at is -1, for orders of other types)
+    private static int[] spliceIn(int[] order, int at, int row) {
+        int[] result = new int[at < 0 ? order.length : order.length + 1];
+        int k = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (i == at) {
+                result[k++] = row;
+            }
+            int r = order[i];
+            result[k++] = r >= row ? r + 1 : r;
+        }
+        if (at == order.length) {
+            result[k] = row;
+        }
+        return result;
+    }
+
+    // Copy of an order without the entry at position at (nothing dropped when at is -1), with rows after
+    // the removed one renumbered down by one
+    private static int[] spliceOut(int[] order, int at, int row) {
+        int[] result = new int[at < 0 ? order.length : order.length - 1];
+        int k = 0;
+        for (int i = 0; i < order.length; i++) {
+            if (i == at) {
+                continue;
+            }
+            int r = order[i];
+            result[k++] = r > row ? r - 1 : r;
+        }
+        return result;
+    }
+
+    private static int[] identity(int size) {
+        int[] rows = new int[size];
+        for (int row = 0; row < size; row++) {
+            rows[row] = row;
+        }
+        return rows;
+    }
+
+    private static int[][] splitByType(int[] rows, byte[] types) {
+        int[] counts = new int[TYPES.length];
+        for (int row : rows) {
+            counts[types[row]]++;
+        }
+        int[][] split = new int[TYPES.length][];
+        for (int t = 0; t < TYPES.length; t++) {
+            split[t] = new int[counts[t]];
+            counts[t] = 0;
+        }
+        for (int row : rows) {
+            int t = types[row];
+            split[t][counts[t]++] = row;
+        }
+        return split;
+    }
+
+    // Stable bottom-up merge sort of row numbers by a primitive key: no boxing, no comparator calls
+    static int[] sortRows(int[] rows, long[] keys) {
+        int[] src = rows.clone();
+        int[] buf = new int[src.length];
+        for (int width = 1; width < src.length; width <<= 1) {
+            for (int lo = 0; lo < src.length; lo += width << 1) {
+                int mid = Math.min(lo + width, src.length);
+                int hi = Math.min(lo + (width << 1), src.length);
+                int i = lo;
+                int j = mid;
+                int k = lo;
+                while (i < mid && j < hi) {
+                    buf[k++] = keys[src[j]] < keys[src[i]] ? src[j++] : src[i++];
+                }
+                while (i < mid) {
+                    buf[k++] = src[i++];
+                }
+                while (j < hi) {
+                    buf[k++] = src[j++];
+                }
+            }
+            int[] swap = src;
+            src = buf;
+            buf = swap;
+        }
+        return src;
+    }
+
+    static long epochMillis(LocalDateTime dateTime) {
+        return dateTime == null ? Long.MIN_VALUE : dateTime.toInstant(ZoneOffset.UTC).toEpochMilli();
+    }
+
+    // Giveaways usually have no price; for sorting they count as free
+    static long cents(BigDecimal price) {
+        return price == null ? 0 : Math.max(0, price.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue());
+    }
+
+    private static String normalize(String author) {
+        return author == null ? "" : author.trim().toLowerCase(Locale.ROOT);
+    }
+
+    private static long[] permute(long[] column, int[] order) {
+        long[] result = new long[order.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = column[order[i]];
+        }
+        return result;
+    }
+
+    private static int[] permute(int[] column, int[] order) {
+        int[] result = new int[order.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = column[order[i]];
+        }
+        return result;
+    }
+
+    private static byte[] permute(byte[] column, int[] order) {
+        byte[] result = new byte[order.length];
+        for (int i = 0; i < order.length; i++) {
+            result[i] = column[order[i]];
+        }
+        return result;
+    }
+
+    private long[] insert(long[] column, int at, long value) {
+        long[] result = new long[size + 1];
+        System.arraycopy(column, 0, result, 0, at);
+        result[at] = value;
+        System.arraycopy(column, at, result, at + 1, size - at);
+        return result;
+    }
+
+    private int[] insert(int[] column, int at, int value) {
+        int[] result = new int[size + 1];
+        System.arraycopy(column, 0, result, 0, at);
+        result[at] = value;
+        System.arraycopy(column, at, result, at + 1, size - at);
+        return result;
+    }
+
+    private byte[] insert(byte[] column, int at, byte value) {
+        byte[] result = new byte[size + 1];
+        System.arraycopy(column, 0, result, 0, at);
+        result[at] = value;
+        System.arraycopy(column, at, result, at + 1, size - at);
+        return result;
+    }
+
+    private long[] remove(long[] column, int at) {
+        long[] result = new long[size - 1];
+        System.arraycopy(column, 0, result, 0, at);
+        System.arraycopy(column, at + 1, result, at, size - at - 1);
+        return result;
+    }
+
+    private int[] remove(int[] column, int at) {
+        int[] result = new int[size - 1];
+        System.arraycopy(column, 0, result, 0, at);
+        System.arraycopy(column, at + 1, result, at, size - at - 1);
+        return result;
+    }
+
+    private byte[] remove(byte[] column, int at) {
+        byte[] result = new byte[size - 1];
+        System.arraycopy(column, 0, result, 0, at);
+        System.arraycopy(column, at + 1, result, at, size - at - 1);
+        return result;
+    }
+
+    // Copy-on-write view of the author dictionary for a single insert: only copied if the name is new
+    private static final class Dictionary {
+        String[] names;
+        Map<String, Integer> codes;
+        private boolean copied;
+
+        Dictionary(String[] names, Map<String, Integer> codes) {
+            this.names = names;
+            this.codes = codes;
+        }
+
+        int codeOf(String author) {
+            String key = normalize(author);
+            Integer code = codes.get(key);
+            if (code != null) {
+                return code;
+            }
+            if (!copied) {
+                codes = new HashMap<>(codes);
+                copied = true;
+            }
+            int next = names.length;
+            names = Arrays.copyOf(names, next + 1);
+            names[next] = author;
+            codes.put(key, next);
+            return next;
+        }
+    }
+}
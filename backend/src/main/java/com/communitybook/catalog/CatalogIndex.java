@@ -0,0 +1,166 @@
+package com.communitybook.catalog;
+
+import com.communitybook.event.BookChangedEvent;
+import com.communitybook.event.BookChangedEvent.ChangeType;
+import com.communitybook.model.BookType;
+import com.communitybook.repository.BookBrowseRow;
+import com.communitybook.repository.BookRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-memory browse index over the books table: filter by type and author, sort by date or price and
+// paginate without touching the database. Only the ids of the requested page come out of it; the caller
+// loads just those books.
+//
+// The index is loaded on first use from a projection of the browse columns. After that it follows
+// BookChangedEvents (local writes and invalidations from other instances) by re-reading the single
+// changed row. The row is read before taking the write lock, so a slow query never holds up other
+// changes; each change takes a ticket so an older read cannot overwrite a newer one for the same book.
+// A full invalidation, or a failure while applying a change, drops the index so the next browse request
+// reloads it.
+@Component
+public class CatalogIndex implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(CatalogIndex.class);
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    // null = not loaded; replaced as a whole on every change, so readers never lock
+    private volatile CatalogColumns columns;
+
+    // Serializes loads and updates, so a change cannot be applied to an index that is still being loaded
+    private final Object writeLock = new Object();
+    // Bumped on every load; a row read before a reload is not applied to the reloaded index
+    private long generation;
+    private final AtomicLong tickets = new AtomicLong();
+    // Latest ticket per book with a change in flight
+    private final Map<Long, Long> latestTickets = new ConcurrentHashMap<>();
+
+    public Result browse(BookType type, String author, BrowseSort sort, int page, int size) {
+        CatalogColumns current = columns;
+        if (current == null) {
+            current = load();
+        }
+        int authorCode = author == null || author.isBlank() ? CatalogColumns.ANY : current.authorCode(author);
+        int typeOrdinal = type == null ? CatalogColumns.ANY : type.ordinal();
+        long offset = (long) page * size;
+        if (offset > Integer.MAX_VALUE) {
+            offset = Integer.MAX_VALUE;
+        }
+        return current.query(typeOrdinal, authorCode, sort, (int) offset, size);
+    }
+
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.isFullInvalidation()) {
+            clear();
+            return;
+        }
+        long id = event.getBookId();
+        long startedInGeneration;
+        synchronized (writeLock) {
+            if (columns == null) {
+                // Nothing loaded yet; the first browse request will see the change
+                return;
+            }
+            startedInGeneration = generation;
+        }
+        long ticket = tickets.incrementAndGet();
+        latestTickets.put(id, ticket);
+        try {
+            Optional<BookBrowseRow> row = Optional.empty();
+            boolean removed = event.getChangeType() == ChangeType.DELETED
+                    || event.getChangeType() == ChangeType.ARCHIVED;
+            if (!removed) {
+                try {
+                    row = bookRepository.findBrowseRowById(id);
+                } catch (DataAccessException e) {
+                    log.warn("Could not apply change to book {} to the browse index, it will be reloaded", id, e);
+                    clear();
+                    return;
+                }
+            }
+            synchronized (writeLock) {
+                CatalogColumns current = columns;
+                // Skip if the index was dropped or reloaded meanwhile, or a newer change to this book was read
+                if (current == null || generation != startedInGeneration
+                        || !Long.valueOf(ticket).equals(latestTickets.get(id))) {
+                    return;
+                }
+                columns = row.map(current::with).orElseGet(() -> current.without(id));
+            }
+        } finally {
+            latestTickets.remove(id, ticket);
+        }
+    }
+
+    public void clear() {
+        synchronized (writeLock) {
+            columns = null;
+            generation++;
+        }
+    }
+
+    public int size() {
+        CatalogColumns current = columns;
+        return current == null ? 0 : current.size();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("catalog.index.books", this, CatalogIndex::size)
+                .description("Listings held in the in-memory browse index")
+                .register(registry);
+        Gauge.builder("catalog.index.bytes", this, index -> {
+                    CatalogColumns current = index.columns;
+                    return current == null ? 0 : current.estimatedBytes();
+                })
+                .description("Approximate heap used by the browse index")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    private CatalogColumns load() {
+        synchronized (writeLock) {
+            CatalogColumns current = columns;
+            if (current == null) {
+                long start = System.nanoTime();
+                current = CatalogColumns.of(bookRepository.findAllBrowseRows());
+                columns = current;
+                generation++;
+                log.info("Loaded {} listings into the browse index in {} ms", current.size(),
+                        (System.nanoTime() - start) / 1_000_000);
+            }
+            return current;
+        }
+    }
+
+    // Ids of one page in display order, plus the total number of matching listings
+    public static class Result {
+
+        private final long[] ids;
+        private final int total;
+
+        Result(long[] ids, int total) {
+            this.ids = ids;
+            this.total = total;
+        }
+
+        public long[] getIds() { return ids; }
+
+        public int getTotal() { return total; }
+    }
+}
@@ -2,19 +2,36 @@
 // It uses Spring Boot's REST controller features to map HTTP requests to Java methods.
 package com.communitybook.controller;
 
+import com.communitybook.cache.ListingSnapshots;
+import com.communitybook.catalog.BrowsePage;
+import com.communitybook.catalog.BrowseSort;
+import com.communitybook.cache.PhotoCache;
+import com.communitybook.logging.RequestLoggingFilter;
+import com.communitybook.lookup.BookLookupRequest;
+import com.communitybook.lookup.BookLookupResult;
 import com.communitybook.model.Book;
 import com.communitybook.model.BookType;
+import com.communitybook.photo.DuplicatePhotoDetector;
+import com.communitybook.resilience.ReadDegradation;
 import com.communitybook.service.BookService;
+import com.communitybook.stats.BookStats;
+import com.communitybook.timing.ServerTimingFilter;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.core.io.Resource;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.RequestAttributes;
+import org.springframework.web.context.request.RequestContextHolder;
 import org.springframework.web.multipart.MultipartFile;
 import org.springframework.http.MediaType;
 
 import java.io.IOException;
 import java.util.List;
+import java.util.Optional;
 
 // Marks this class as a REST controller, so its methods handle HTTP requests and return data (usually JSON)
 @RestController
@@ -23,6 +40,10 @@ import java.util.List;
 @CrossOrigin(origins = {
     "http://localhost:3000", // for local dev
     "https://community-book.vercel.app" // deployed frontend URL
+}, exposedHeaders = {
+    DuplicatePhotoDetector.DUPLICATE_OF_HEADER,
+    ServerTimingFilter.HEADER, // lets the frontend read the phase breakdown, not just the network tab
+    RequestLoggingFilter.REQUEST_ID_HEADER // so error reports from the frontend can quote the request id
 })
 public class BookController {
     
@@ -30,30 +51,85 @@ public class BookController {
     @Autowired
     private BookService bookService;
     
+    // Off-heap cache for the bytes of popular book photos
+    @Autowired
+    private PhotoCache photoCache;
+    
+    // Pre-encoded JSON of the listing endpoints, rebuilt in the background after each write
+    @Autowired
+    private ListingSnapshots listingSnapshots;
+    
+    // Circuit breakers for the read endpoints, with a last-known-good fallback
+    @Autowired
+    private ReadDegradation readDegradation;
+    
+    // Perceptual-hash lookup of uploaded photos against the photos of existing listings
+    @Autowired
+    private DuplicatePhotoDetector duplicatePhotoDetector;
+    
     // Handles GET requests to /api/v1/books
-    // Returns a list of all books
+    // Returns a list of all books (served from a pre-encoded snapshot)
     @GetMapping("/v1/books")
-    public ResponseEntity<List<Book>> getAllBooks() {
-        List<Book> books = bookService.getAllBooks();
-        return ResponseEntity.ok(books);
+    public ResponseEntity<byte[]> getAllBooks() {
+        return snapshotResponse(listingSnapshots.allBooks());
+    }
+    
+    // Handles GET requests to /api/v1/books?includeArchived=true
+    // Same as above but also returns listings that have been moved to the archive (not snapshotted)
+    @GetMapping(value = "/v1/books", params = "includeArchived=true")
+    public ResponseEntity<List<Book>> getAllBooksIncludingArchived() {
+        return ResponseEntity.ok(bookService.getAllBooks(true));
+    }
+    
+    // Handles GET requests to /api/v1/books?ids=1,2,3
+    // Returns the listings with the given ids (without photo bytes) in one round trip, plus the ids not found
+    @GetMapping(value = "/v1/books", params = "ids")
+    public ResponseEntity<BookLookupResult> lookupBooks(@RequestParam List<Long> ids) {
+        return ResponseEntity.ok(bookService.lookupBooks(ids));
+    }
+    
+    // Handles POST requests to /api/v1/books/lookup with {"ids": [...]}
+    // Same as above, for id lists too long for a URL
+    @PostMapping("/v1/books/lookup")
+    public ResponseEntity<BookLookupResult> lookupBooks(@RequestBody BookLookupRequest request) {
+        return ResponseEntity.ok(bookService.lookupBooks(request.getIds()));
     }
     
     // Handles GET requests to /api/v1/books/{id}
     // Returns a single book by its ID, or 404 if not found
+    // Archived listings are only found with includeArchived=true
     @GetMapping("/v1/books/{id}")
-    public ResponseEntity<Book> getBookById(@PathVariable Long id) {
-        return bookService.getBookById(id)
-                .map(book -> ResponseEntity.ok(book))
+    public ResponseEntity<Book> getBookById(@PathVariable Long id,
+                                            @RequestParam(defaultValue = "false") boolean includeArchived) {
+        ReadDegradation.Result<Optional<Book>> result = readDegradation.execute("getBookById", id + ":" + includeArchived,
+                () -> bookService.getBookById(id, includeArchived),
+                book -> book.map(BookController::approximateSize).orElse(64L));
+        return result.getValue()
+                .map(book -> ok(result.isStale(), result.getAgeSeconds()).body(book))
+                .orElse(ResponseEntity.notFound().build());
+    }
+    
+    // Handles GET requests to /api/v1/books/{id}/similar?limit=10
+    // Returns listings with similar title, author and description, most similar first, or 404 if the book is not found
+    @GetMapping("/v1/books/{id}/similar")
+    public ResponseEntity<List<Book>> getSimilarBooks(@PathVariable Long id,
+                                                      @RequestParam(defaultValue = "10") int limit) {
+        return bookService.getSimilarBooks(id, limit)
+                .map(ResponseEntity::ok)
                 .orElse(ResponseEntity.notFound().build());
     }
     
     // Handles POST requests to /api/v1/books/upload (multipart form for image upload)
+    // A photo that another listing already uses is flagged with X-Duplicate-Of, or refused with 409 in reject mode
     @PostMapping(value = "/v1/books/upload", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
     public ResponseEntity<Book> createBookWithImage(
             @RequestPart("book") Book book,
             @RequestPart("photo") MultipartFile photo
     ) throws IOException {
-        book.setPhotoData(photo.getBytes());
+        byte[] photoData = photo.getBytes();
+        DuplicatePhotoDetector.Check duplicateCheck = duplicatePhotoDetector.check(photoData);
+        book.setPhotoData(photoData);
+        book.setPhotoHash(duplicateCheck.getHash());
         // Optionally set photoUrl to a download endpoint
     book.setPhotoUrl("/v1/books/" + book.getId() + "/photo");
         Book savedBook = bookService.saveBook(book);
@@ -61,25 +137,66 @@ public class BookController {
     savedBook.setPhotoUrl("/v1/books/" + savedBook.getId() + "/photo");
         bookService.saveBook(savedBook);
         // return a JSON response to React
-        return ResponseEntity.status(HttpStatus.CREATED).body(savedBook);
+        ResponseEntity.BodyBuilder response = ResponseEntity.status(HttpStatus.CREATED);
+        if (duplicateCheck.getDuplicateOf() != null) {
+            response.header(DuplicatePhotoDetector.DUPLICATE_OF_HEADER, duplicateCheck.getDuplicateOf().toString());
+        }
+        return response.body(savedBook);
     }
 
     // Endpoint to serve the book image
+    // Popular photos are served from the photo cache; everything else is loaded from the database.
+    // Archived listings keep their photoUrl, so the archive is checked when the id is not in books.
     @GetMapping("/v1/books/{id}/photo")
-    public ResponseEntity<byte[]> getBookPhoto(@PathVariable Long id) {
-        return bookService.getBookById(id)
+    public ResponseEntity<Resource> getBookPhoto(@PathVariable Long id) {
+        PhotoCache.CachedPhoto cached = photoCache.get(id);
+        if (cached != null) {
+            // The cached bytes stay pinned until the response has been written, then they are released
+            RequestContextHolder.currentRequestAttributes().registerDestructionCallback(
+                    "photoCache." + id, cached::release, RequestAttributes.SCOPE_REQUEST);
+            return ResponseEntity.ok()
+                    .contentType(cached.getContentType())
+                    .body(cached);
+        }
+        long stamp = photoCache.invalidationStamp();
+        return bookService.getBookById(id, true)
                 .filter(book -> book.getPhotoData() != null)
                 .map(book -> {
                     // Detect image format from byte data
                     byte[] imageData = book.getPhotoData();
                     MediaType contentType = detectImageMediaType(imageData);
+                    photoCache.put(id, imageData, contentType, stamp);
                     return ResponseEntity.ok()
                             .contentType(contentType)
-                            .body(imageData);
+                            .<Resource>body(new ByteArrayResource(imageData));
                 })
                 .orElse(ResponseEntity.notFound().build());
     }
     
+    // Spring answers with 304 Not Modified by itself when the request's If-None-Match matches the ETag
+    private ResponseEntity<byte[]> snapshotResponse(ListingSnapshots.Snapshot snapshot) {
+        return ok(snapshot.isStale(), snapshot.getAgeSeconds())
+                .eTag(snapshot.getETag())
+                .contentType(MediaType.APPLICATION_JSON)
+                .body(snapshot.getBody());
+    }
+    
+    // A 200 response builder that flags responses served from the last known good copy
+    // (because the database was failing) with the standard Warning and Age headers
+    private static ResponseEntity.BodyBuilder ok(boolean stale, long ageSeconds) {
+        ResponseEntity.BodyBuilder builder = ResponseEntity.ok();
+        if (stale) {
+            builder.header(HttpHeaders.WARNING, "110 - \"Response is Stale\"")
+                    .header(HttpHeaders.AGE, Long.toString(ageSeconds));
+        }
+        return builder;
+    }
+    
+    // Rough in-memory size of a book, dominated by its photo bytes
+    private static long approximateSize(Book book) {
+        return 1024 + (book.getPhotoData() == null ? 0 : book.getPhotoData().length);
+    }
+    
     private MediaType detectImageMediaType(byte[] imageData) {
         if (imageData.length < 4) {
             return MediaType.APPLICATION_OCTET_STREAM;
@@ -129,19 +246,46 @@ public class BookController {
     }
     
     // Handles GET requests to /api/v1/books/type/{type}
-    // Returns a list of books filtered by their type
+    // Returns a list of books filtered by their type (served from a pre-encoded snapshot)
     @GetMapping("/v1/books/type/{type}")
-    public ResponseEntity<List<Book>> getBooksByType(@PathVariable BookType type) {
-        List<Book> books = bookService.getBooksByType(type);
-        return ResponseEntity.ok(books);
+    public ResponseEntity<byte[]> getBooksByType(@PathVariable BookType type) {
+        return snapshotResponse(listingSnapshots.booksByType(type));
+    }
+    
+    // Handles GET requests to /api/v1/books/type/{type}?includeArchived=true
+    @GetMapping(value = "/v1/books/type/{type}", params = "includeArchived=true")
+    public ResponseEntity<List<Book>> getBooksByTypeIncludingArchived(@PathVariable BookType type) {
+        return ResponseEntity.ok(bookService.getBooksByType(type, true));
+    }
+    
+    // Handles GET requests to /api/v1/books/browse?type=SELL&author=...&sort=price_asc&page=0&size=20
+    // Filters, sorts and paginates from the in-memory browse index; sort is newest (default), oldest,
+    // price_asc or price_desc
+    @GetMapping("/v1/books/browse")
+    public ResponseEntity<BrowsePage> browseBooks(@RequestParam(required = false) BookType type,
+                                                  @RequestParam(required = false) String author,
+                                                  @RequestParam(defaultValue = "newest") String sort,
+                                                  @RequestParam(defaultValue = "0") int page,
+                                                  @RequestParam(defaultValue = "20") int size) {
+        return ResponseEntity.ok(bookService.browseBooks(type, author, BrowseSort.fromParam(sort), page, size));
+    }
+    
+    // Handles GET requests to /api/v1/books/stats
+    // Returns counts per type, new listings per day, average and median sell price and the top authors
+    @GetMapping("/v1/books/stats")
+    public ResponseEntity<BookStats> getStats() {
+        return ResponseEntity.ok(bookService.getStats());
     }
     
     // Handles GET requests to /api/v1/books/search?query=...
-    // Returns a list of books that match the search query
+    // Returns a list of books that match the search query (add includeArchived=true to search the archive too)
     @GetMapping("/v1/books/search")
-    public ResponseEntity<List<Book>> searchBooks(@RequestParam String query) {
-        List<Book> books = bookService.searchBooks(query);
-        return ResponseEntity.ok(books);
+    public ResponseEntity<List<Book>> searchBooks(@RequestParam String query,
+                                                  @RequestParam(defaultValue = "false") boolean includeArchived) {
+        ReadDegradation.Result<List<Book>> result = readDegradation.execute("searchBooks", query.toLowerCase() + ":" + includeArchived,
+                () -> bookService.searchBooks(query, includeArchived),
+                books -> books.stream().mapToLong(BookController::approximateSize).sum());
+        return ok(result.isStale(), result.getAgeSeconds()).body(result.getValue());
     }
     
 }
@@ -0,0 +1,56 @@
+package com.communitybook.event;
+
+// Published by BookService after a book row has been created, updated or deleted, and by the
+// invalidation bus when another backend instance reports a change.
+// Anything that keeps in-process state derived from the books table listens for it to stay in sync.
+public class BookChangedEvent {
+
+    public enum ChangeType {
+        CREATED,
+        UPDATED,
+        DELETED,
+        // Moved out of the books table into books_archive by the archival job
+        ARCHIVED,
+        // Changed on another node; listeners should reload the row (it may no longer exist)
+        INVALIDATED
+    }
+
+    private final Long bookId;
+    private final ChangeType changeType;
+    // The catalog version after this change was applied
+    private final long version;
+    // True when the change was made on another backend instance
+    private final boolean remote;
+
+    public BookChangedEvent(Long bookId, ChangeType changeType, long version) {
+        this(bookId, changeType, version, false);
+    }
+
+    public BookChangedEvent(Long bookId, ChangeType changeType, long version, boolean remote) {
+        this.bookId = bookId;
+        this.changeType = changeType;
+        this.version = version;
+        this.remote = remote;
+    }
+
+    // Builds the event used when this node may have missed changes and must drop everything it derived
+    public static BookChangedEvent fullInvalidation(long version) {
+        return new BookChangedEvent(null, ChangeType.INVALIDATED, version, true);
+    }
+
+    public Long getBookId() { return bookId; }
+
+    public ChangeType getChangeType() { return changeType; }
+
+    public long getVersion() { return version; }
+
+    public boolean isRemote() { return remote; }
+
+    // No single book id: every book may have changed
+    public boolean isFullInvalidation() { return bookId == null; }
+
+    @Override
+    public String toString() {
+        return "BookChangedEvent{bookId=" + bookId + ", changeType=" + changeType + ", version=" + version + ", remote=" + remote + "}";
+    }
+}
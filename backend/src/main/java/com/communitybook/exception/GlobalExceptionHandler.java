@@ -1,5 +1,9 @@
 package com.communitybook.exception;
 
+import com.communitybook.photo.DuplicatePhotoDetector;
+import com.communitybook.photo.DuplicatePhotoException;
+import com.communitybook.resilience.ServiceDegradedException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ControllerAdvice;
@@ -13,4 +17,22 @@ public class GlobalExceptionHandler {
     public ResponseEntity<String> handleIllegalArgumentException(IllegalArgumentException ex) {
         return ResponseEntity.status(HttpStatus.BAD_REQUEST).body(ex.getMessage());
     }
+
+    // The database is being protected by a circuit breaker and there was no earlier response to serve
+    @ExceptionHandler(ServiceDegradedException.class)
+    @ResponseBody
+    public ResponseEntity<String> handleServiceDegradedException(ServiceDegradedException ex) {
+        return ResponseEntity.status(HttpStatus.SERVICE_UNAVAILABLE)
+                .header(HttpHeaders.RETRY_AFTER, "10")
+                .body(ex.getMessage());
+    }
+
+    // The uploaded photo is already used by another listing and duplicates are rejected
+    @ExceptionHandler(DuplicatePhotoException.class)
+    @ResponseBody
+    public ResponseEntity<String> handleDuplicatePhotoException(DuplicatePhotoException ex) {
+        return ResponseEntity.status(HttpStatus.CONFLICT)
+                .header(DuplicatePhotoDetector.DUPLICATE_OF_HEADER, Long.toString(ex.getDuplicateOf()))
+                .body(ex.getMessage());
+    }
 }
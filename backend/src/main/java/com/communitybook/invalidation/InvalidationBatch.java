@@ -0,0 +1,85 @@
+package com.communitybook.invalidation;
+
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+// One message on the invalidation bus: the ids of books that changed on the sending node,
+// or "everything" when the sender had too many changes to list.
+public class InvalidationBatch {
+
+    private final String originNode;
+    // Cluster-wide version assigned by the transport when the batch was published (0 before that)
+    private final long version;
+    private final boolean all;
+    private final Set<Long> bookIds;
+
+    public InvalidationBatch(String originNode, long version, boolean all, Set<Long> bookIds) {
+        this.originNode = originNode;
+        this.version = version;
+        this.all = all;
+        this.bookIds = all ? Collections.emptySet() : Collections.unmodifiableSet(bookIds);
+    }
+
+    public InvalidationBatch withVersion(long version) {
+        return new InvalidationBatch(originNode, version, all, bookIds);
+    }
+
+    public String getOriginNode() { return originNode; }
+
+    public long getVersion() { return version; }
+
+    public boolean isAll() { return all; }
+
+    public Set<Long> getBookIds() { return bookIds; }
+
+    // Compact text form used as the NOTIFY payload, e.g. "node-a|42|17,18,23" or "node-a|43|*"
+    public String encode() {
+        return payloadHead() + version + payloadTail();
+    }
+
+    // The parts of the payload before and after the version, so the transport can splice in a
+    // version it assigns in the same statement that sends the notification
+    String payloadHead() {
+        return originNode + '|';
+    }
+
+    String payloadTail() {
+        StringBuilder payload = new StringBuilder("|");
+        if (all) {
+            return payload.append('*').toString();
+        }
+        boolean first = true;
+        for (Long id : bookIds) {
+            if (!first) {
+                payload.append(',');
+            }
+            payload.append(id);
+            first = false;
+        }
+        return payload.toString();
+    }
+
+    public static InvalidationBatch decode(String payload) {
+        String[] parts = payload.split("\\|", 3);
+        if (parts.length != 3) {
+            throw new IllegalArgumentException("Malformed invalidation payload: " + payload);
+        }
+        long version = Long.parseLong(parts[1]);
+        if (parts[2].equals("*")) {
+            return new InvalidationBatch(parts[0], version, true, Collections.emptySet());
+        }
+        Set<Long> ids = new LinkedHashSet<>();
+        for (String id : parts[2].split(",")) {
+            if (!id.isEmpty()) {
+                ids.add(Long.parseLong(id));
+            }
+        }
+        return new InvalidationBatch(parts[0], version, false, ids);
+    }
+
+    @Override
+    public String toString() {
+        return "InvalidationBatch{" + encode() + "}";
+    }
+}
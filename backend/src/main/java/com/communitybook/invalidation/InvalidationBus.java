@@ -0,0 +1,213 @@
+package com.communitybook.invalidation;
+
+import com.communitybook.event.BookChangedEvent;
+import com.communitybook.event.BookChangedEvent.ChangeType;
+import com.communitybook.service.CatalogVersion;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+
+import java.time.Duration;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+// Keeps in-process state consistent across backend instances.
+//
+// Outgoing: local BookChangedEvents are collected for a short window, duplicate ids are coalesced,
+// and the ids are published as one batch on the transport.
+// Incoming: batches from other nodes are re-published locally as remote BookChangedEvents, so the
+// photo cache, listing snapshots, etc. react exactly as they do to local writes.
+// Every batch carries a cluster-wide version. The node tracks the highest version up to which it has
+// seen every batch; if the cluster moved past that while the node was disconnected, some batches were
+// missed and everything is invalidated.
+public class InvalidationBus {
+
+    private static final Logger log = LoggerFactory.getLogger(InvalidationBus.class);
+
+    // NOTIFY payloads are limited to 8000 bytes; larger batches are sent as "invalidate everything"
+    static final int MAX_IDS_PER_BATCH = 400;
+    // A version can be assigned and never delivered (the node died, the notification failed), so a gap
+    // is only waited on for a while, and never for more than this many later versions
+    static final int MAX_SEEN_AHEAD = 1000;
+
+    private final InvalidationTransport transport;
+    private final ApplicationEventPublisher eventPublisher;
+    private final CatalogVersion catalogVersion;
+    private final String nodeId;
+    private final Duration batchWindow;
+    private final long gapTimeoutNanos;
+
+    private final Set<Long> pending = ConcurrentHashMap.newKeySet();
+    private final AtomicBoolean flushScheduled = new AtomicBoolean();
+    // Guarded by "this": every version up to seenThrough was received, plus the ones in seenAhead
+    private long seenThrough;
+    private final TreeSet<Long> seenAhead = new TreeSet<>();
+    // When the oldest gap below seenAhead opened
+    private long gapSince;
+    private final ScheduledExecutorService flusher = Executors.newSingleThreadScheduledExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "invalidation-flusher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public InvalidationBus(InvalidationTransport transport, ApplicationEventPublisher eventPublisher,
+                           CatalogVersion catalogVersion, String nodeId, Duration batchWindow,
+                           Duration gapTimeout) {
+        this.transport = transport;
+        this.eventPublisher = eventPublisher;
+        this.catalogVersion = catalogVersion;
+        this.nodeId = nodeId;
+        this.batchWindow = batchWindow;
+        this.gapTimeoutNanos = gapTimeout.toNanos();
+    }
+
+    public void start() {
+        transport.start(new InvalidationTransport.Listener() {
+            @Override
+            public void onBatch(InvalidationBatch batch) {
+                receive(batch);
+            }
+
+            @Override
+            public void onReconnect(long latestVersion) {
+                resync(latestVersion);
+            }
+        });
+        // Read only once the transport is listening: a batch published in between is then delivered
+        // rather than lost, and a version older than this one is simply already seen
+        long latestVersion = transport.latestVersion();
+        synchronized (this) {
+            seenThrough = Math.max(seenThrough, latestVersion);
+            seenAhead.headSet(seenThrough, true).clear();
+            advance(System.nanoTime());
+        }
+        log.info("Invalidation bus started on node {}", nodeId);
+    }
+
+    public void stop() {
+        flusher.shutdown();
+        flush();
+        transport.stop();
+    }
+
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        // Remote events came from the bus in the first place; sending them back would loop forever
+        if (event.isRemote()) {
+            return;
+        }
+        pending.add(event.getBookId());
+        if (flushScheduled.compareAndSet(false, true)) {
+            flusher.schedule(this::flush, batchWindow.toMillis(), TimeUnit.MILLISECONDS);
+        }
+    }
+
+    // Publishes everything collected so far as one batch. On failure the ids are kept for the next attempt.
+    public void flush() {
+        flushScheduled.set(false);
+        Set<Long> ids = new LinkedHashSet<>();
+        for (Long id : pending) {
+            if (pending.remove(id)) {
+                ids.add(id);
+            }
+        }
+        if (ids.isEmpty()) {
+            return;
+        }
+        boolean all = ids.size() > MAX_IDS_PER_BATCH;
+        try {
+            // Our own batch counts as seen only once it comes back through the listener
+            transport.publish(new InvalidationBatch(nodeId, 0, all, all ? new HashSet<>() : ids));
+        } catch (RuntimeException e) {
+            log.warn("Could not publish invalidation of {} book(s), will retry", ids.size(), e);
+            pending.addAll(ids);
+            if (flushScheduled.compareAndSet(false, true) && !flusher.isShutdown()) {
+                flusher.schedule(this::flush, Math.max(1000, batchWindow.toMillis()), TimeUnit.MILLISECONDS);
+            }
+        }
+    }
+
+    void receive(InvalidationBatch batch) {
+        markSeen(batch.getVersion());
+        if (batch.getOriginNode().equals(nodeId)) {
+            return;
+        }
+        long version = catalogVersion.increment();
+        if (batch.isAll()) {
+            eventPublisher.publishEvent(BookChangedEvent.fullInvalidation(version));
+            return;
+        }
+        for (Long id : batch.getBookIds()) {
+            eventPublisher.publishEvent(new BookChangedEvent(id, ChangeType.INVALIDATED, version, true));
+        }
+    }
+
+    void resync(long latestVersion) {
+        long seen;
+        synchronized (this) {
+            expireGap(System.nanoTime());
+            seen = seenThrough;
+            seenThrough = Math.max(seenThrough, latestVersion);
+            seenAhead.headSet(seenThrough, true).clear();
+            gapSince = System.nanoTime();
+        }
+        if (latestVersion > seen) {
+            log.info("Missed invalidations while disconnected (saw everything up to version {}, cluster is at {}), "
+                    + "dropping all cached state", seen, latestVersion);
+            eventPublisher.publishEvent(BookChangedEvent.fullInvalidation(catalogVersion.increment()));
+        }
+    }
+
+    synchronized long seenThrough() {
+        return seenThrough;
+    }
+
+    // Batches can arrive slightly out of version order, so keep early arrivals until the gap closes
+    private synchronized void markSeen(long version) {
+        if (version <= seenThrough) {
+            return;
+        }
+        long now = System.nanoTime();
+        if (seenAhead.isEmpty()) {
+            gapSince = now;
+        }
+        seenAhead.add(version);
+        advance(now);
+        expireGap(now);
+    }
+
+    // Gives up on a gap that stayed open too long: the missing version was burned, not delayed.
+    // A batch that still shows up later is delivered as usual, it just no longer counts here.
+    private void expireGap(long now) {
+        while (!seenAhead.isEmpty()
+                && (now - gapSince >= gapTimeoutNanos || seenAhead.size() > MAX_SEEN_AHEAD)) {
+            log.debug("Giving up on invalidation versions {} to {}", seenThrough + 1, seenAhead.first() - 1);
+            seenThrough = seenAhead.first() - 1;
+            advance(now);
+        }
+    }
+
+    private void advance(long now) {
+        boolean moved = false;
+        while (!seenAhead.isEmpty() && seenAhead.first() == seenThrough + 1) {
+            seenThrough = seenAhead.pollFirst();
+            moved = true;
+        }
+        if (moved) {
+            // Any gap that is still open is a newer one
+            gapSince = now;
+        }
+    }
+}
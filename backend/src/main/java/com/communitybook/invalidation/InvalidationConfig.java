@@ -0,0 +1,50 @@
+package com.communitybook.invalidation;
+
+import com.communitybook.service.CatalogVersion;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.time.Duration;
+import java.util.UUID;
+
+// Wires up the invalidation bus according to app.invalidation.transport:
+// - none (default): single instance, nothing to broadcast
+// - postgres: LISTEN/NOTIFY on the application database, for multi-node deployments
+// - loopback: in-memory, for tests
+@Configuration
+public class InvalidationConfig {
+
+    @Bean(destroyMethod = "stop")
+    @ConditionalOnProperty(name = "app.invalidation.transport", havingValue = "postgres")
+    public InvalidationTransport postgresInvalidationTransport(
+            JdbcTemplate jdbcTemplate,
+            @Value("${spring.datasource.url}") String url,
+            @Value("${spring.datasource.username:}") String username,
+            @Value("${spring.datasource.password:}") String password) {
+        return new PostgresInvalidationTransport(jdbcTemplate, url, username, password);
+    }
+
+    @Bean(destroyMethod = "stop")
+    @ConditionalOnProperty(name = "app.invalidation.transport", havingValue = "loopback")
+    public InvalidationTransport loopbackInvalidationTransport() {
+        return new LoopbackInvalidationTransport();
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "stop")
+    @ConditionalOnExpression("'${app.invalidation.transport:none}' != 'none'")
+    public InvalidationBus invalidationBus(
+            InvalidationTransport transport,
+            ApplicationEventPublisher eventPublisher,
+            CatalogVersion catalogVersion,
+            @Value("${app.invalidation.node-id:}") String nodeId,
+            @Value("${app.invalidation.batch-window:50ms}") Duration batchWindow,
+            @Value("${app.invalidation.gap-timeout:30s}") Duration gapTimeout) {
+        String node = nodeId.isBlank() ? UUID.randomUUID().toString() : nodeId;
+        return new InvalidationBus(transport, eventPublisher, catalogVersion, node, batchWindow, gapTimeout);
+    }
+}
@@ -0,0 +1,26 @@
+package com.communitybook.invalidation;
+
+// Carries invalidation batches between backend instances.
+// Implementations: PostgresInvalidationTransport (LISTEN/NOTIFY) for real deployments and
+// LoopbackInvalidationTransport (in memory) for tests and single-node setups.
+public interface InvalidationTransport {
+
+    interface Listener {
+        // A batch published by any node, including this one
+        void onBatch(InvalidationBatch batch);
+
+        // The connection was lost and has been re-established; batches sent in between may have been missed
+        void onReconnect(long latestVersion);
+    }
+
+    // Starts delivering batches to the listener
+    void start(Listener listener);
+
+    void stop();
+
+    // Sends the batch to every node and returns the cluster-wide version assigned to it
+    long publish(InvalidationBatch batch);
+
+    // The highest version assigned so far by any node
+    long latestVersion();
+}
@@ -0,0 +1,75 @@
+package com.communitybook.invalidation;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicLong;
+
+// In-memory transport. Every transport created on the same Hub sees the others' batches, which lets
+// tests run several "nodes" inside one JVM. Delivery is synchronous, on the publishing thread.
+public class LoopbackInvalidationTransport implements InvalidationTransport {
+
+    // Stands in for the shared database: hands out versions and fans batches out to connected transports
+    public static class Hub {
+        private final AtomicLong version = new AtomicLong();
+        private final List<LoopbackInvalidationTransport> transports = new CopyOnWriteArrayList<>();
+
+        private long publish(InvalidationBatch batch) {
+            InvalidationBatch versioned = batch.withVersion(version.incrementAndGet());
+            for (LoopbackInvalidationTransport transport : transports) {
+                transport.deliver(versioned);
+            }
+            return versioned.getVersion();
+        }
+    }
+
+    private final Hub hub;
+    private volatile Listener listener;
+    private volatile boolean connected;
+
+    public LoopbackInvalidationTransport() {
+        this(new Hub());
+    }
+
+    public LoopbackInvalidationTransport(Hub hub) {
+        this.hub = hub;
+    }
+
+    @Override
+    public void start(Listener listener) {
+        this.listener = listener;
+        this.connected = true;
+        hub.transports.add(this);
+    }
+
+    @Override
+    public void stop() {
+        connected = false;
+        hub.transports.remove(this);
+    }
+
+    @Override
+    public long publish(InvalidationBatch batch) {
+        return hub.publish(batch);
+    }
+
+    @Override
+    public long latestVersion() {
+        return hub.version.get();
+    }
+
+    // Simulates a dropped connection: batches published until reconnect() are lost for this node
+    public void disconnect() {
+        connected = false;
+    }
+
+    public void reconnect() {
+        connected = true;
+        listener.onReconnect(latestVersion());
+    }
+
+    private void deliver(InvalidationBatch batch) {
+        if (connected) {
+            listener.onBatch(batch);
+        }
+    }
+}
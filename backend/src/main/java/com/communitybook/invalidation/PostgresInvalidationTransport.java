@@ -0,0 +1,159 @@
+package com.communitybook.invalidation;
+
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+// Uses Postgres LISTEN/NOTIFY as the invalidation bus, so no extra infrastructure is needed.
+//
+// - Publishing goes through the normal connection pool: the batch gets the next value of
+//   catalog_version_seq as its cluster-wide version and is sent with pg_notify in the same statement.
+// - Listening needs one long-lived connection, which is opened outside the Hikari pool so it does not
+//   take a slot away from requests. start() issues LISTEN before it returns, so the version the bus
+//   reads afterwards cannot miss a notification. If the connection drops, the listener thread
+//   reconnects with backoff, listens again and only then reports the latest version, so the bus can
+//   tell whether anything was missed.
+public class PostgresInvalidationTransport implements InvalidationTransport {
+
+    private static final Logger log = LoggerFactory.getLogger(PostgresInvalidationTransport.class);
+
+    static final String CHANNEL = "book_invalidation";
+    private static final long INITIAL_BACKOFF_MILLIS = 500;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final String url;
+    private final String username;
+    private final String password;
+    private final long initialBackoffMillis;
+
+    private volatile boolean running;
+    private Thread listenerThread;
+
+    public PostgresInvalidationTransport(JdbcTemplate jdbcTemplate, String url, String username, String password) {
+        this(jdbcTemplate, url, username, password, INITIAL_BACKOFF_MILLIS);
+    }
+
+    PostgresInvalidationTransport(JdbcTemplate jdbcTemplate, String url, String username, String password,
+                                  long initialBackoffMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.url = url;
+        this.username = username;
+        this.password = password;
+        this.initialBackoffMillis = initialBackoffMillis;
+    }
+
+    @Override
+    public void start(Listener listener) {
+        running = true;
+        Connection initial = null;
+        try {
+            initial = openListening();
+        } catch (SQLException e) {
+            log.warn("Could not listen for invalidations yet, retrying in the background", e);
+        }
+        Connection first = initial;
+        listenerThread = new Thread(() -> listen(listener, first), "invalidation-listener");
+        listenerThread.setDaemon(true);
+        listenerThread.start();
+    }
+
+    @Override
+    public void stop() {
+        running = false;
+        if (listenerThread != null) {
+            listenerThread.interrupt();
+        }
+    }
+
+    @Override
+    public long publish(InvalidationBatch batch) {
+        // One statement, so a version is only ever taken together with its notification. A version that
+        // is assigned but never sent would leave a gap every other node waits on.
+        // The volatile nextval keeps Postgres from flattening the subquery, so it runs exactly once.
+        Long version = jdbcTemplate.queryForObject(
+                "SELECT pg_notify(?, ? || v.version || ?), v.version "
+                        + "FROM (SELECT nextval('catalog_version_seq') AS version) v",
+                (rs, rowNum) -> rs.getLong(2), CHANNEL, batch.payloadHead(), batch.payloadTail());
+        return version == null ? 0 : version;
+    }
+
+    @Override
+    public long latestVersion() {
+        Long version = jdbcTemplate.queryForObject(
+                "SELECT CASE WHEN is_called THEN last_value ELSE 0 END FROM catalog_version_seq", Long.class);
+        return version == null ? 0 : version;
+    }
+
+    // Opens the dedicated LISTEN connection; overridden in tests
+    Connection connect() throws SQLException {
+        return DriverManager.getConnection(url, username, password);
+    }
+
+    // Connects and issues LISTEN; from then on every notification is queued on the connection
+    private Connection openListening() throws SQLException {
+        Connection connection = connect();
+        try (Statement statement = connection.createStatement()) {
+            statement.execute("LISTEN " + CHANNEL);
+        } catch (SQLException | RuntimeException e) {
+            connection.close();
+            throw e;
+        }
+        return connection;
+    }
+
+    // initial is the connection start() began listening on, or null if that failed
+    private void listen(Listener listener, Connection initial) {
+        long backoffMillis = initialBackoffMillis;
+        Connection next = initial;
+        while (running) {
+            // Anything other than the connection opened by start() resumes after a gap that may have lost batches
+            boolean resumed = next == null;
+            try (Connection connection = resumed ? openListening() : next) {
+                next = null;
+                if (resumed) {
+                    log.info("Invalidation listener reconnected to Postgres");
+                    // Read after LISTEN, so no batch falls between the version and the notifications.
+                    // Reading the latest version goes through the pool and the resync fans out to every
+                    // cache, so this can fail with a DataAccessException; it is retried like a lost connection
+                    listener.onReconnect(latestVersion());
+                }
+                backoffMillis = initialBackoffMillis;
+
+                PGConnection pgConnection = connection.unwrap(PGConnection.class);
+                while (running) {
+                    // Blocks for up to half a second waiting for notifications
+                    PGNotification[] notifications = pgConnection.getNotifications(500);
+                    if (notifications == null) {
+                        continue;
+                    }
+                    for (PGNotification notification : notifications) {
+                        try {
+                            listener.onBatch(InvalidationBatch.decode(notification.getParameter()));
+                        } catch (RuntimeException e) {
+                            log.warn("Ignoring invalidation '{}'", notification.getParameter(), e);
+                        }
+                    }
+                }
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                log.warn("Invalidation listener lost its Postgres connection, retrying in {} ms", backoffMillis, e);
+                try {
+                    Thread.sleep(backoffMillis);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                backoffMillis = Math.min(backoffMillis * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+}
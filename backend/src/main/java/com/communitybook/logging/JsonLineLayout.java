@@ -0,0 +1,89 @@
+package com.communitybook.logging;
+
+import ch.qos.logback.classic.spi.ILoggingEvent;
+import ch.qos.logback.classic.spi.IThrowableProxy;
+import ch.qos.logback.classic.spi.StackTraceElementProxy;
+import ch.qos.logback.core.CoreConstants;
+import ch.qos.logback.core.LayoutBase;
+
+import java.time.Instant;
+import java.util.Map;
+
+// Writes each log event as one compact JSON object per line, e.g.
+//   {"ts":"2024-05-01T12:00:00.123Z","level":"WARN","logger":"com.communitybook.logging.RequestLoggingFilter",
+//    "thread":"http-nio-8080-exec-3","requestId":"4f1c...","msg":"Slow request ..."}
+// MDC entries become top-level fields and a stack trace goes into "stack". No JSON library is involved,
+// the line is built in a single StringBuilder.
+public class JsonLineLayout extends LayoutBase<ILoggingEvent> {
+
+    private static final int MAX_STACK_FRAMES = 30;
+
+    @Override
+    public String doLayout(ILoggingEvent event) {
+        StringBuilder out = new StringBuilder(256);
+        out.append("{\"ts\":\"").append(Instant.ofEpochMilli(event.getTimeStamp())).append('"');
+        field(out, "level", event.getLevel().toString());
+        field(out, "logger", event.getLoggerName());
+        field(out, "thread", event.getThreadName());
+        Map<String, String> mdc = event.getMDCPropertyMap();
+        if (mdc != null) {
+            for (Map.Entry<String, String> entry : mdc.entrySet()) {
+                field(out, entry.getKey(), entry.getValue());
+            }
+        }
+        field(out, "msg", event.getFormattedMessage());
+        IThrowableProxy throwable = event.getThrowableProxy();
+        if (throwable != null) {
+            StringBuilder stack = new StringBuilder(512);
+            appendThrowable(stack, throwable);
+            field(out, "stack", stack.toString());
+        }
+        return out.append('}').append(CoreConstants.LINE_SEPARATOR).toString();
+    }
+
+    private static void appendThrowable(StringBuilder stack, IThrowableProxy throwable) {
+        for (IThrowableProxy current = throwable; current != null; current = current.getCause()) {
+            if (current != throwable) {
+                stack.append("\nCaused by: ");
+            }
+            stack.append(current.getClassName()).append(": ").append(current.getMessage());
+            StackTraceElementProxy[] frames = current.getStackTraceElementProxyArray();
+            int shown = Math.min(frames.length, MAX_STACK_FRAMES);
+            for (int i = 0; i < shown; i++) {
+                stack.append("\n\tat ").append(frames[i].getStackTraceElement());
+            }
+            if (frames.length > shown) {
+                stack.append("\n\t... ").append(frames.length - shown).append(" more");
+            }
+        }
+    }
+
+    private static void field(StringBuilder out, String name, String value) {
+        out.append(",\"");
+        escape(out, name);
+        out.append("\":\"");
+        escape(out, value == null ? "" : value);
+        out.append('"');
+    }
+
+    static void escape(StringBuilder out, String value) {
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            switch (c) {
+                case '"' -> out.append("\\\"");
+                case '\\' -> out.append("\\\\");
+                case '\n' -> out.append("\\n");
+                case '\r' -> out.append("\\r");
+                case '\t' -> out.append("\\t");
+                default -> {
+                    if (c < 0x20) {
+                        out.append("\\u00");
+                        out.append(Character.forDigit(c >> 4, 16)).append(Character.forDigit(c & 0xF, 16));
+                    } else {
+                        out.append(c);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,99 @@
+package com.communitybook.logging;
+
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.slf4j.MDC;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.time.Duration;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Pattern;
+
+// Outermost filter: gives every request a correlation id and decides whether it is logged in detail.
+//
+// - The id comes from the X-Request-Id header (e.g. set by the load balancer) or is generated. It is put
+//   in the MDC as "requestId", so every log line of the request carries it, and echoed in the response.
+// - One in sample-one-in requests is marked as verbose in the MDC. SamplingTurboFilter then lets that
+//   request's DEBUG and SQL logging through even though those loggers are at INFO in production.
+// - Sending X-Debug-Log with the configured debug token makes a single request verbose on demand,
+//   without a restart or a global level change.
+// - Requests slower than slow-request-threshold get one WARN summary line with their Server-Timing breakdown.
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE)
+public class RequestLoggingFilter extends OncePerRequestFilter {
+
+    private static final Logger log = LoggerFactory.getLogger(RequestLoggingFilter.class);
+
+    public static final String REQUEST_ID_HEADER = "X-Request-Id";
+    public static final String DEBUG_HEADER = "X-Debug-Log";
+    public static final String MDC_REQUEST_ID = "requestId";
+    public static final String MDC_VERBOSE = "verbose";
+
+    // Incoming ids end up in every log line, so only accept short, harmless ones
+    private static final Pattern VALID_REQUEST_ID = Pattern.compile("[A-Za-z0-9._-]{1,64}");
+
+    private final long sampleOneIn;
+    private final long slowThresholdNanos;
+    private final byte[] debugToken;
+    private final AtomicLong requestCounter = new AtomicLong();
+
+    public RequestLoggingFilter(@Value("${app.logging.sample-one-in:0}") long sampleOneIn,
+                                @Value("${app.logging.slow-request-threshold:1s}") Duration slowRequestThreshold,
+                                @Value("${app.logging.debug-token:}") String debugToken) {
+        this.sampleOneIn = sampleOneIn;
+        this.slowThresholdNanos = slowRequestThreshold.toNanos();
+        this.debugToken = debugToken.isBlank() ? null : debugToken.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        String requestId = request.getHeader(REQUEST_ID_HEADER);
+        if (requestId == null || !VALID_REQUEST_ID.matcher(requestId).matches()) {
+            requestId = UUID.randomUUID().toString();
+        }
+        MDC.put(MDC_REQUEST_ID, requestId);
+        boolean verbose = isVerbose(request);
+        if (verbose) {
+            MDC.put(MDC_VERBOSE, "true");
+        }
+        response.setHeader(REQUEST_ID_HEADER, requestId);
+
+        long start = System.nanoTime();
+        try {
+            chain.doFilter(request, response);
+        } finally {
+            long elapsed = System.nanoTime() - start;
+            if (elapsed >= slowThresholdNanos) {
+                log.warn("Slow request {} {} -> {} in {} ms [{}]", request.getMethod(), request.getRequestURI(),
+                        response.getStatus(), elapsed / 1_000_000, response.getHeader("Server-Timing"));
+            } else if (verbose) {
+                log.info("{} {} -> {} in {} ms", request.getMethod(), request.getRequestURI(),
+                        response.getStatus(), elapsed / 1_000_000);
+            }
+            MDC.remove(MDC_VERBOSE);
+            MDC.remove(MDC_REQUEST_ID);
+        }
+    }
+
+    private boolean isVerbose(HttpServletRequest request) {
+        String token = request.getHeader(DEBUG_HEADER);
+        if (token != null && debugToken != null
+                && MessageDigest.isEqual(debugToken, token.getBytes(StandardCharsets.UTF_8))) {
+            return true;
+        }
+        return sampleOneIn > 0 && requestCounter.incrementAndGet() % sampleOneIn == 0;
+    }
+}
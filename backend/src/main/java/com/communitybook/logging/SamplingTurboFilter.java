@@ -0,0 +1,46 @@
+package com.communitybook.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.Logger;
+import ch.qos.logback.classic.turbo.TurboFilter;
+import ch.qos.logback.core.spi.FilterReply;
+import org.slf4j.MDC;
+import org.slf4j.Marker;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// Lets DEBUG logging through for sampled requests only (see RequestLoggingFilter).
+//
+// In production the application and org.hibernate.SQL loggers stay at INFO, so for normal requests
+// their DEBUG calls are dropped by the usual level check. When the current request is marked verbose
+// in the MDC, DEBUG events from the configured logger prefixes are accepted regardless of level.
+// TRACE is never forced on, since e.g. Hibernate's bind parameter logging would expose user data.
+//
+// Configured in logback-spring.xml:
+//   <turboFilter class="com.communitybook.logging.SamplingTurboFilter">
+//     <logger>com.communitybook</logger>
+//     <logger>org.hibernate.SQL</logger>
+//   </turboFilter>
+public class SamplingTurboFilter extends TurboFilter {
+
+    private final List<String> loggers = new ArrayList<>();
+
+    public void addLogger(String prefix) {
+        loggers.add(prefix);
+    }
+
+    @Override
+    public FilterReply decide(Marker marker, Logger logger, Level level, String format, Object[] params, Throwable t) {
+        if (level != Level.DEBUG || !isStarted() || !"true".equals(MDC.get(RequestLoggingFilter.MDC_VERBOSE))) {
+            return FilterReply.NEUTRAL;
+        }
+        String name = logger.getName();
+        for (String prefix : loggers) {
+            if (name.startsWith(prefix)) {
+                return FilterReply.ACCEPT;
+            }
+        }
+        return FilterReply.NEUTRAL;
+    }
+}
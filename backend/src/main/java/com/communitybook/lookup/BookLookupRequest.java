@@ -0,0 +1,13 @@
+package com.communitybook.lookup;
+
+import java.util.List;
+
+// Body of POST /v1/books/lookup, for id lists too long for a query string
+public class BookLookupRequest {
+
+    private List<Long> ids;
+
+    public List<Long> getIds() { return ids; }
+
+    public void setIds(List<Long> ids) { this.ids = ids; }
+}
@@ -0,0 +1,20 @@
+package com.communitybook.lookup;
+
+import java.util.List;
+
+// Response of GET /v1/books?ids=... and POST /v1/books/lookup: the listings found, in the order they were
+// asked for, and the ids that matched nothing (deleted, archived or never existed)
+public class BookLookupResult {
+
+    private final List<BookSummary> books;
+    private final List<Long> missingIds;
+
+    public BookLookupResult(List<BookSummary> books, List<Long> missingIds) {
+        this.books = books;
+        this.missingIds = missingIds;
+    }
+
+    public List<BookSummary> getBooks() { return books; }
+
+    public List<Long> getMissingIds() { return missingIds; }
+}
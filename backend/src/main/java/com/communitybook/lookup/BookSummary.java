@@ -0,0 +1,66 @@
+package com.communitybook.lookup;
+
+import com.communitybook.model.BookType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// A listing as returned by the multi-get endpoints: every field of Book except the photo bytes.
+// Clients load the photo from photoUrl. Built straight from a JPQL constructor expression, so photo_data
+// is never read either.
+public class BookSummary {
+
+    private final Long id;
+    private final String title;
+    private final String author;
+    private final BigDecimal price;
+    private final String photoUrl;
+    private final BookType type;
+    private final String description;
+    private final String ownerName;
+    private final String contactMethod;
+    private final String contactInfo;
+    private final LocalDateTime createdAt;
+    private final LocalDateTime updatedAt;
+
+    public BookSummary(Long id, String title, String author, BigDecimal price, String photoUrl, BookType type,
+                       String description, String ownerName, String contactMethod, String contactInfo,
+                       LocalDateTime createdAt, LocalDateTime updatedAt) {
+        this.id = id;
+        this.title = title;
+        this.author = author;
+        this.price = price;
+        this.photoUrl = photoUrl;
+        this.type = type;
+        this.description = description;
+        this.ownerName = ownerName;
+        this.contactMethod = contactMethod;
+        this.contactInfo = contactInfo;
+        this.createdAt = createdAt;
+        this.updatedAt = updatedAt;
+    }
+
+    public Long getId() { return id; }
+
+    public String getTitle() { return title; }
+
+    public String getAuthor() { return author; }
+
+    public BigDecimal getPrice() { return price; }
+
+    public String getPhotoUrl() { return photoUrl; }
+
+    public BookType getType() { return type; }
+
+    public String getDescription() { return description; }
+
+    public String getOwnerName() { return ownerName; }
+
+    public String getContactMethod() { return contactMethod; }
+
+    public String getContactInfo() { return contactInfo; }
+
+    public LocalDateTime getCreatedAt() { return createdAt; }
+
+    public LocalDateTime getUpdatedAt() { return updatedAt; }
+}
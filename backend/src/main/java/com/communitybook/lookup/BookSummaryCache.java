@@ -0,0 +1,114 @@
+package com.communitybook.lookup;
+
+import com.communitybook.event.BookChangedEvent;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.stereotype.Component;
+
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Recently looked-up listings (without photos), so watchlists that are fetched over and over mostly skip
+// the database. Bounded by entry count, least recently used out first.
+//
+// Entries are dropped on every BookChangedEvent for their id. A lookup takes an invalidation stamp before
+// querying, and its results are only stored if no change happened in the meantime, so a row read just
+// before an update can never be cached after it.
+@Component
+public class BookSummaryCache implements MeterBinder {
+
+    private final int maxEntries;
+    private final AtomicLong invalidations = new AtomicLong();
+
+    // Guarded by itself; access order = LRU
+    private final LinkedHashMap<Long, BookSummary> entries;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    public BookSummaryCache(@Value("${app.lookup.cache-size:10000}") int maxEntries) {
+        this.maxEntries = maxEntries;
+        this.entries = new LinkedHashMap<>(256, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Long, BookSummary> eldest) {
+                return size() > BookSummaryCache.this.maxEntries;
+            }
+        };
+    }
+
+    // Puts the cached listings for the given ids into found; returns how many there were
+    public int getAll(Collection<Long> ids, Map<Long, BookSummary> found) {
+        int count = 0;
+        synchronized (entries) {
+            for (Long id : ids) {
+                BookSummary summary = entries.get(id);
+                if (summary != null) {
+                    found.put(id, summary);
+                    count++;
+                }
+            }
+        }
+        hits.add(count);
+        misses.add(ids.size() - count);
+        return count;
+    }
+
+    public long invalidationStamp() {
+        return invalidations.get();
+    }
+
+    public void putAll(Collection<BookSummary> summaries, long stamp) {
+        if (maxEntries <= 0) {
+            return;
+        }
+        synchronized (entries) {
+            if (stamp != invalidations.get()) {
+                return;
+            }
+            for (BookSummary summary : summaries) {
+                entries.put(summary.getId(), summary);
+            }
+        }
+    }
+
+    public void clear() {
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            entries.clear();
+        }
+    }
+
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.isFullInvalidation()) {
+            clear();
+            return;
+        }
+        synchronized (entries) {
+            invalidations.incrementAndGet();
+            entries.remove(event.getBookId());
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("lookup.cache.requests", hits, LongAdder::sum)
+                .tag("result", "hit").register(registry);
+        FunctionCounter.builder("lookup.cache.requests", misses, LongAdder::sum)
+                .tag("result", "miss").register(registry);
+        Gauge.builder("lookup.cache.entries", this, BookSummaryCache::size).register(registry);
+    }
+}
@@ -1,5 +1,6 @@
 package com.communitybook.model;
 
+import com.fasterxml.jackson.annotation.JsonIgnore;
 import jakarta.persistence.*;
 import jakarta.validation.constraints.*;
 import java.math.BigDecimal;
@@ -28,9 +29,16 @@ public class Book {
     @Size(max = 500)
     private String photoUrl;
     
-    @Column(name = "photo_data")
+    // bytea as in the Postgres schema; without it generated schemas (the H2 test database) default to
+    // VARBINARY(255), which no real photo fits in
+    @Column(name = "photo_data", columnDefinition = "bytea")
     private byte[] photoData;
     
+    // Perceptual hash of the photo, used to spot the same cover being posted again (not part of the API)
+    @JsonIgnore
+    @Column(name = "photo_hash")
+    private Long photoHash;
+    
     @Enumerated(EnumType.STRING)
     @NotNull(message = "Type is required")
     private BookType type;
@@ -103,6 +111,9 @@ public class Book {
     public byte[] getPhotoData() { return photoData; }
     public void setPhotoData(byte[] photoData) { this.photoData = photoData; }
     
+    public Long getPhotoHash() { return photoHash; }
+    public void setPhotoHash(Long photoHash) { this.photoHash = photoHash; }
+    
     public BookType getType() { return type; }
     public void setType(BookType type) { this.type = type; }
     
@@ -0,0 +1,310 @@
+package com.communitybook.photo;
+
+import com.communitybook.event.BookChangedEvent;
+import com.communitybook.event.BookChangedEvent.ChangeType;
+import com.communitybook.repository.BookPhotoHashRow;
+import com.communitybook.repository.BookRepository;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+// Spots uploads whose photo is the same cover as an existing listing (re-posts, spam), by perceptual hash.
+//
+// Depending on app.duplicate-photos.mode an upload with a duplicate photo is
+//  - warn: accepted, with the original listing's id in the X-Duplicate-Of response header
+//  - reject: refused with 409 Conflict (DuplicatePhotoException)
+//  - off: not checked at all
+// The hashes of all current listings are kept in a PhotoHashIndex, built at startup and kept up to date
+// from BookChangedEvents like the other in-memory indexes. Changed rows are read before taking the write
+// lock. A full invalidation (or a failed update) rebuilds the index on a background thread while uploads
+// keep being checked against the old one; changes arriving during the rebuild are replayed onto the new
+// index before it replaces the old. Until the first build has succeeded, uploads are not checked.
+@Component
+public class DuplicatePhotoDetector implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(DuplicatePhotoDetector.class);
+
+    public static final String DUPLICATE_OF_HEADER = "X-Duplicate-Of";
+
+    public enum Mode { OFF, WARN, REJECT }
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private final Mode mode;
+    private final int maxDistance;
+
+    // null = not built yet
+    private volatile PhotoHashIndex index;
+    private final Object writeLock = new Object();
+    // Bumped whenever index is replaced; a row read before that is not applied to the new index
+    private long generation;
+    private final AtomicLong tickets = new AtomicLong();
+    // Latest ticket per book with a change in flight, so an older read never overwrites a newer one
+    private final Map<Long, Long> latestTickets = new ConcurrentHashMap<>();
+
+    // Only one build at a time; ids changed while it reads the table are replayed before it is swapped in
+    private final Object rebuildLock = new Object();
+    private Set<Long> changedDuringRebuild;
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "photo-hash-index-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final LongAdder warned = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+
+    public DuplicatePhotoDetector(@Value("${app.duplicate-photos.mode:warn}") String mode,
+                                  @Value("${app.duplicate-photos.max-distance:4}") int maxDistance) {
+        this.mode = Mode.valueOf(mode.trim().toUpperCase(Locale.ROOT));
+        this.maxDistance = maxDistance;
+    }
+
+    // Hashes an uploaded photo and looks for an existing listing with (nearly) the same one.
+    // Throws DuplicatePhotoException in reject mode; the hash should be stored with the new listing.
+    public Check check(byte[] imageData) {
+        if (mode == Mode.OFF) {
+            return Check.NONE;
+        }
+        Long hash = PerceptualHash.of(imageData);
+        if (hash == null) {
+            return Check.NONE;
+        }
+        PhotoHashIndex current = index;
+        if (current == null) {
+            // The startup build failed or has not finished; do not hold up the upload for it
+            scheduleRebuild();
+            return new Check(hash, null);
+        }
+        long duplicateOf = current.findNearest(hash);
+        if (duplicateOf == PhotoHashIndex.NONE) {
+            return new Check(hash, null);
+        }
+        if (mode == Mode.REJECT) {
+            rejected.increment();
+            throw new DuplicatePhotoException(duplicateOf);
+        }
+        warned.increment();
+        log.info("Uploaded photo looks like the one of listing {}", duplicateOf);
+        return new Check(hash, duplicateOf);
+    }
+
+    // For hashes written without a BookChangedEvent (the backfill job)
+    void indexHash(long id, long hash) {
+        synchronized (writeLock) {
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(id);
+            }
+            PhotoHashIndex current = index;
+            if (current != null) {
+                current.put(id, hash);
+            }
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildAtStartup() {
+        if (mode == Mode.OFF) {
+            return;
+        }
+        try {
+            rebuild();
+        } catch (DataAccessException e) {
+            log.warn("Could not build the duplicate photo index at startup, uploads are not checked until it is", e);
+        }
+    }
+
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        if (mode == Mode.OFF) {
+            return;
+        }
+        if (event.isFullInvalidation()) {
+            scheduleRebuild();
+            return;
+        }
+        long id = event.getBookId();
+        long startedInGeneration;
+        synchronized (writeLock) {
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(id);
+            }
+            if (index == null) {
+                return;
+            }
+            startedInGeneration = generation;
+        }
+        long ticket = tickets.incrementAndGet();
+        latestTickets.put(id, ticket);
+        try {
+            Optional<Long> hash = Optional.empty();
+            if (event.getChangeType() != ChangeType.DELETED && event.getChangeType() != ChangeType.ARCHIVED) {
+                try {
+                    hash = bookRepository.findPhotoHashById(id);
+                } catch (DataAccessException e) {
+                    log.warn("Could not apply change to book {} to the photo hash index, it will be rebuilt", id, e);
+                    scheduleRebuild();
+                    return;
+                }
+            }
+            synchronized (writeLock) {
+                PhotoHashIndex current = index;
+                if (current == null || generation != startedInGeneration
+                        || !Long.valueOf(ticket).equals(latestTickets.get(id))) {
+                    return;
+                }
+                if (hash.isPresent()) {
+                    current.put(id, hash.get());
+                } else {
+                    current.remove(id);
+                }
+            }
+        } finally {
+            latestTickets.remove(id, ticket);
+        }
+    }
+
+    public void clear() {
+        synchronized (writeLock) {
+            index = null;
+            generation++;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        FunctionCounter.builder("photo.duplicates", warned, LongAdder::sum)
+                .description("Uploads whose photo matched an existing listing")
+                .tag("action", "warned")
+                .register(registry);
+        FunctionCounter.builder("photo.duplicates", rejected, LongAdder::sum)
+                .description("Uploads whose photo matched an existing listing")
+                .tag("action", "rejected")
+                .register(registry);
+        Gauge.builder("photo.hash.index.books", this, detector -> {
+                    PhotoHashIndex current = detector.index;
+                    return current == null ? 0 : current.size();
+                })
+                .description("Listings held in the duplicate photo index")
+                .register(registry);
+        Gauge.builder("photo.hash.index.bytes", this, detector -> {
+                    PhotoHashIndex current = detector.index;
+                    return current == null ? 0 : current.estimatedBytes();
+                })
+                .description("Approximate heap used by the duplicate photo index")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    // Queues a background rebuild unless one is already waiting to start
+    private void scheduleRebuild() {
+        if (!rebuildQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            rebuildExecutor.execute(() -> {
+                rebuildQueued.set(false);
+                try {
+                    rebuild();
+                } catch (DataAccessException e) {
+                    log.warn("Rebuilding the duplicate photo index failed, keeping the previous one", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rebuildQueued.set(false);
+        }
+    }
+
+    // Reads the table without holding writeLock, so checks and updates go on against the old index
+    private void rebuild() {
+        synchronized (rebuildLock) {
+            synchronized (writeLock) {
+                changedDuringRebuild = new HashSet<>();
+            }
+            try {
+                long start = System.nanoTime();
+                List<BookPhotoHashRow> rows = bookRepository.findAllPhotoHashes();
+                PhotoHashIndex fresh = new PhotoHashIndex(maxDistance, rows.size() + rows.size() / 4);
+                for (BookPhotoHashRow row : rows) {
+                    fresh.put(row.getId(), row.getPhotoHash());
+                }
+                while (true) {
+                    Set<Long> changed;
+                    synchronized (writeLock) {
+                        changed = changedDuringRebuild;
+                        if (changed.isEmpty()) {
+                            index = fresh;
+                            generation++;
+                            break;
+                        }
+                        changedDuringRebuild = new HashSet<>();
+                    }
+                    for (Long id : changed) {
+                        Optional<Long> hash = bookRepository.findPhotoHashById(id);
+                        if (hash.isPresent()) {
+                            fresh.put(id, hash.get());
+                        } else {
+                            fresh.remove(id);
+                        }
+                    }
+                }
+                log.info("Built the duplicate photo index for {} listings in {} ms", fresh.size(),
+                        (System.nanoTime() - start) / 1_000_000);
+            } finally {
+                synchronized (writeLock) {
+                    changedDuringRebuild = null;
+                }
+            }
+        }
+    }
+
+    public static class Check {
+
+        // Nothing to store or report (checking is off, or the image could not be decoded)
+        public static final Check NONE = new Check(null, null);
+
+        private final Long hash;
+        private final Long duplicateOf;
+
+        Check(Long hash, Long duplicateOf) {
+            this.hash = hash;
+            this.duplicateOf = duplicateOf;
+        }
+
+        public Long getHash() { return hash; }
+
+        // Id of the existing listing with the same photo, or null
+        public Long getDuplicateOf() { return duplicateOf; }
+    }
+}
@@ -0,0 +1,16 @@
+package com.communitybook.photo;
+
+// Thrown on upload when the photo is (nearly) identical to one already posted and duplicates are rejected
+public class DuplicatePhotoException extends RuntimeException {
+
+    private final long duplicateOf;
+
+    public DuplicatePhotoException(long duplicateOf) {
+        super("This photo has already been posted (listing " + duplicateOf + ").");
+        this.duplicateOf = duplicateOf;
+    }
+
+    public long getDuplicateOf() {
+        return duplicateOf;
+    }
+}
@@ -0,0 +1,85 @@
+package com.communitybook.photo;
+
+import javax.imageio.ImageIO;
+import javax.imageio.ImageReadParam;
+import javax.imageio.ImageReader;
+import javax.imageio.stream.ImageInputStream;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Iterator;
+
+// 64-bit difference hash (dHash) of an image: shrink it to 9x8 grey cells and record, for each row, whether
+// brightness goes up or down between neighbouring cells. Re-encoding, resizing, recompression and small
+// edits flip only a few bits, so copies of the same cover end up a small Hamming distance apart.
+public final class PerceptualHash {
+
+    private static final int COLUMNS = 9;
+    private static final int ROWS = 8;
+    // Decode at roughly this many pixels per cell; plenty for averaging, far less work than full size
+    private static final int PIXELS_PER_CELL = 8;
+
+    private PerceptualHash() {
+    }
+
+    // null when the bytes are not an image ImageIO can decode (e.g. WebP without a plugin)
+    public static Long of(byte[] imageData) {
+        if (imageData == null || imageData.length == 0) {
+            return null;
+        }
+        try (ImageInputStream input = ImageIO.createImageInputStream(new ByteArrayInputStream(imageData))) {
+            Iterator<ImageReader> readers = input == null ? null : ImageIO.getImageReaders(input);
+            if (readers == null || !readers.hasNext()) {
+                return null;
+            }
+            ImageReader reader = readers.next();
+            try {
+                reader.setInput(input, true, true);
+                int width = reader.getWidth(0);
+                int height = reader.getHeight(0);
+                // Decoding every pixel of a phone photo is what makes hashing slow; subsampling skips most of them
+                ImageReadParam param = reader.getDefaultReadParam();
+                int step = Math.max(1, Math.min(width / (COLUMNS * PIXELS_PER_CELL), height / (ROWS * PIXELS_PER_CELL)));
+                param.setSourceSubsampling(step, step, 0, 0);
+                return of(reader.read(0, param));
+            } finally {
+                reader.dispose();
+            }
+        } catch (IOException | RuntimeException e) {
+            return null;
+        }
+    }
+
+    static long of(BufferedImage image) {
+        int width = image.getWidth();
+        int height = image.getHeight();
+        int[] pixels = image.getRGB(0, 0, width, height, null, 0, width);
+        long[] brightness = new long[COLUMNS * ROWS];
+        long[] counts = new long[COLUMNS * ROWS];
+        for (int y = 0; y < height; y++) {
+            int row = y * ROWS / height;
+            for (int x = 0; x < width; x++) {
+                int rgb = pixels[y * width + x];
+                int cell = row * COLUMNS + x * COLUMNS / width;
+                // Luma, scaled by 1000 to stay in integers
+                brightness[cell] += ((rgb >> 16) & 0xFF) * 299 + ((rgb >> 8) & 0xFF) * 587 + (rgb & 0xFF) * 114;
+                counts[cell]++;
+            }
+        }
+        long hash = 0;
+        for (int row = 0; row < ROWS; row++) {
+            for (int column = 0; column < COLUMNS - 1; column++) {
+                int left = row * COLUMNS + column;
+                int right = left + 1;
+                // left average < right average, compared without dividing
+                boolean brighter = brightness[left] * counts[right] < brightness[right] * counts[left];
+                hash = (hash << 1) | (brighter ? 1 : 0);
+            }
+        }
+        return hash;
+    }
+
+    public static int distance(long a, long b) {
+        return Long.bitCount(a ^ b);
+    }
+}
@@ -0,0 +1,105 @@
+package com.communitybook.photo;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+// Computes photo_hash for listings posted before duplicate detection existed.
+//
+// Walks the books table in id order, a small batch at a time (each row carries its photo bytes), with a
+// pause in between so it never competes with user traffic for long. Rows whose photo cannot be decoded
+// stay NULL and are simply tried again on the next run. Several instances may run it at once: the update
+// only fills in a hash that is still missing.
+//
+// Hashes are added to this instance's duplicate index directly, but only for rows the update actually
+// changed: a row deleted (or hashed by another instance) after the batch was read must not end up in the
+// index. Other instances pick the hashes up the next time their index is built.
+@Component
+public class PhotoHashBackfill {
+
+    private static final Logger log = LoggerFactory.getLogger(PhotoHashBackfill.class);
+
+    private static final String SELECT_BATCH_SQL =
+            "SELECT id, photo_data FROM books WHERE photo_hash IS NULL AND photo_data IS NOT NULL AND id > ? " +
+            "ORDER BY id LIMIT ?";
+    private static final String UPDATE_SQL = "UPDATE books SET photo_hash = ? WHERE id = ? AND photo_hash IS NULL";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private DuplicatePhotoDetector duplicatePhotoDetector;
+
+    @Value("${app.duplicate-photos.backfill-enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.duplicate-photos.backfill-batch-size:20}")
+    private int batchSize;
+
+    @Value("${app.duplicate-photos.backfill-pause:200ms}")
+    private Duration batchPause;
+
+    @Scheduled(initialDelayString = "${app.duplicate-photos.backfill-initial-delay:PT2M}",
+               fixedDelayString = "${app.duplicate-photos.backfill-interval:PT24H}")
+    public void backfillMissingHashes() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            backfill();
+        } catch (RuntimeException e) {
+            log.warn("Backfilling photo hashes failed, will retry on the next run", e);
+        }
+    }
+
+    // Returns the number of listings that got a hash
+    public int backfill() {
+        long afterId = 0;
+        int hashed = 0;
+        while (true) {
+            List<Object[]> batch = jdbcTemplate.query(SELECT_BATCH_SQL,
+                    (rs, rowNum) -> new Object[] {rs.getLong("id"), rs.getBytes("photo_data")}, afterId, batchSize);
+            List<Object[]> updates = new ArrayList<>(batch.size());
+            for (Object[] row : batch) {
+                long id = (Long) row[0];
+                afterId = id;
+                Long hash = PerceptualHash.of((byte[]) row[1]);
+                if (hash != null) {
+                    updates.add(new Object[] {hash, id});
+                }
+            }
+            if (!updates.isEmpty()) {
+                int[] updated = jdbcTemplate.batchUpdate(UPDATE_SQL, updates);
+                for (int i = 0; i < updated.length; i++) {
+                    // Drivers that do not report counts (SUCCESS_NO_INFO) leave it to the next index build
+                    if (updated[i] > 0) {
+                        Object[] update = updates.get(i);
+                        duplicatePhotoDetector.indexHash((Long) update[1], (Long) update[0]);
+                        hashed++;
+                    }
+                }
+            }
+            if (batch.size() < batchSize) {
+                break;
+            }
+            try {
+                Thread.sleep(batchPause.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (hashed > 0) {
+            log.info("Computed photo hashes for {} existing listing(s)", hashed);
+        }
+        return hashed;
+    }
+}
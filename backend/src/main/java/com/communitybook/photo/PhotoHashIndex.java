@@ -0,0 +1,197 @@
+package com.communitybook.photo;
+
+import com.communitybook.util.LongIntHashMap;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// Multi-index hash table for finding 64-bit photo hashes within a small Hamming distance.
+//
+// The hash is cut into maxDistance + 1 chunks. If two hashes differ in at most maxDistance bits, at least
+// one chunk has no differing bit at all (pigeonhole), so looking up each chunk of the query in its own
+// table and checking the full distance of what is found there never misses a match. Each lookup touches
+// maxDistance + 1 buckets holding about n / 2^chunkBits entries each, instead of every photo.
+//
+// Same storage layout as the similarity index: flat arrays indexed by slot, per-chunk bucket heads and
+// "next in bucket" chains, dead slots skipped until compaction.
+public class PhotoHashIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    // Returned by findNearest when nothing is close enough; also ends bucket chains
+    public static final int NONE = -1;
+    // Wider chunks (only with maxDistance < 3) are folded into 2^16 buckets
+    private static final int MAX_BUCKET_BITS = 16;
+
+    private final int maxDistance;
+    private final int chunks;
+    private final int[] chunkShift;
+    private final long[] chunkMask;
+    private final int[] bucketBits;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int capacity;
+    private int used;
+    private int dead;
+    private long[] slotIds;
+    private long[] hashes;
+    private int[][] bucketHeads;
+    private int[][] nextInBucket;
+    private BitSet alive;
+    private LongIntHashMap slotsById;
+
+    public PhotoHashIndex(int maxDistance) {
+        this(maxDistance, INITIAL_CAPACITY);
+    }
+
+    public PhotoHashIndex(int maxDistance, int expectedSize) {
+        if (maxDistance < 0 || maxDistance > 15) {
+            throw new IllegalArgumentException("maxDistance must be between 0 and 15");
+        }
+        this.maxDistance = maxDistance;
+        this.chunks = maxDistance + 1;
+        chunkShift = new int[chunks];
+        chunkMask = new long[chunks];
+        bucketBits = new int[chunks];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int from = chunk * 64 / chunks;
+            int width = (chunk + 1) * 64 / chunks - from;
+            chunkShift[chunk] = from;
+            chunkMask[chunk] = width == 64 ? -1L : (1L << width) - 1;
+            bucketBits[chunk] = Math.min(width, MAX_BUCKET_BITS);
+        }
+        allocate(Math.max(INITIAL_CAPACITY, expectedSize));
+    }
+
+    public int getMaxDistance() {
+        return maxDistance;
+    }
+
+    public void put(long id, long hash) {
+        lock.writeLock().lock();
+        try {
+            removeSlot(id);
+            if (used == capacity) {
+                rebuild(size() * 2 > capacity ? capacity * 2 : capacity);
+            }
+            int slot = used++;
+            slotIds[slot] = id;
+            hashes[slot] = hash;
+            link(slot);
+            alive.set(slot);
+            slotsById.put(id, slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeSlot(id);
+            if (dead > INITIAL_CAPACITY && dead * 4 > used) {
+                rebuild(capacity);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public int size() {
+        return slotsById.size();
+    }
+
+    public long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            long buckets = 0;
+            for (int[] heads : bucketHeads) {
+                buckets += heads.length;
+            }
+            return capacity * (16L + 4L * chunks) + 4 * buckets + slotsById.estimatedBytes() + capacity / 8;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // The id of the closest indexed photo within maxDistance (the oldest one on ties), or NONE
+    public long findNearest(long hash) {
+        lock.readLock().lock();
+        try {
+            long bestId = NONE;
+            int bestDistance = maxDistance + 1;
+            for (int chunk = 0; chunk < chunks; chunk++) {
+                for (int slot = bucketHeads[chunk][bucketOf(hash, chunk)]; slot != NONE; slot = nextInBucket[chunk][slot]) {
+                    if (!alive.get(slot)) {
+                        continue;
+                    }
+                    int distance = PerceptualHash.distance(hash, hashes[slot]);
+                    if (distance < bestDistance || (distance == bestDistance && slotIds[slot] < bestId)) {
+                        bestDistance = distance;
+                        bestId = slotIds[slot];
+                    }
+                }
+            }
+            return bestId;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    private int bucketOf(long hash, int chunk) {
+        long value = (hash >>> chunkShift[chunk]) & chunkMask[chunk];
+        if (bucketBits[chunk] == MAX_BUCKET_BITS && chunkMask[chunk] >>> MAX_BUCKET_BITS != 0) {
+            // Fibonacci hashing: the top bits of the product depend on every bit of the chunk
+            return (int) ((value * 0x9E3779B97F4A7C15L) >>> (64 - MAX_BUCKET_BITS));
+        }
+        return (int) value;
+    }
+
+    private void removeSlot(long id) {
+        int slot = slotsById.remove(id);
+        if (slot != LongIntHashMap.MISSING) {
+            alive.clear(slot);
+            dead++;
+        }
+    }
+
+    private void link(int slot) {
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            int bucket = bucketOf(hashes[slot], chunk);
+            nextInBucket[chunk][slot] = bucketHeads[chunk][bucket];
+            bucketHeads[chunk][bucket] = slot;
+        }
+    }
+
+    private void allocate(int newCapacity) {
+        capacity = newCapacity;
+        used = 0;
+        dead = 0;
+        slotIds = new long[capacity];
+        hashes = new long[capacity];
+        bucketHeads = new int[chunks][];
+        nextInBucket = new int[chunks][capacity];
+        for (int chunk = 0; chunk < chunks; chunk++) {
+            bucketHeads[chunk] = new int[1 << bucketBits[chunk]];
+            Arrays.fill(bucketHeads[chunk], NONE);
+        }
+        alive = new BitSet(capacity);
+        slotsById = new LongIntHashMap(capacity);
+    }
+
+    private void rebuild(int newCapacity) {
+        long[] oldIds = slotIds;
+        long[] oldHashes = hashes;
+        BitSet oldAlive = alive;
+        allocate(Math.max(newCapacity, INITIAL_CAPACITY));
+        for (int old = oldAlive.nextSetBit(0); old >= 0; old = oldAlive.nextSetBit(old + 1)) {
+            int slot = used++;
+            slotIds[slot] = oldIds[old];
+            hashes[slot] = oldHashes[old];
+            link(slot);
+            alive.set(slot);
+            slotsById.put(oldIds[old], slot);
+        }
+    }
+}
@@ -0,0 +1,20 @@
+package com.communitybook.repository;
+
+import com.communitybook.model.BookType;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
+// Just the columns the browse index needs, read without building Book entities (or loading photo bytes)
+public interface BookBrowseRow {
+
+    Long getId();
+
+    String getAuthor();
+
+    BigDecimal getPrice();
+
+    BookType getType();
+
+    LocalDateTime getCreatedAt();
+}
@@ -0,0 +1,9 @@
+package com.communitybook.repository;
+
+// A listing's perceptual photo hash, for the duplicate photo index
+public interface BookPhotoHashRow {
+
+    Long getId();
+
+    Long getPhotoHash();
+}
@@ -1,5 +1,6 @@
 package com.communitybook.repository;
 
+import com.communitybook.lookup.BookSummary;
 import com.communitybook.model.Book;
 import com.communitybook.model.BookType;
 import org.springframework.data.jpa.repository.JpaRepository;
@@ -7,11 +8,28 @@ import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.util.Collection;
 import java.util.List;
+import java.util.Optional;
 
 @Repository
 public interface BookRepository extends JpaRepository<Book, Long> {
     
+    // Columns shared by books and books_archive, so archived rows can be read back as Book entities
+    String ARCHIVE_COLUMNS = "id, title, author, photo_url, photo_data, price, type, description, " +
+            "owner_name, contact_method, contact_info, created_at, updated_at, photo_hash";
+    
+    // Full-text document of a listing, exactly as idx_books_search_document indexes it (V3 migration)
+    String SEARCH_DOCUMENT = "(setweight(to_tsvector('english', coalesce(title, '')), 'A') || " +
+            "setweight(to_tsvector('english', coalesce(author, '')), 'A') || " +
+            "setweight(to_tsvector('english', coalesce(description, '')), 'B'))";
+    
+    // Full-text or title/author substring match, and its relevance, for the Postgres search queries below
+    String FULL_TEXT_MATCH = SEARCH_DOCUMENT + " @@ websearch_to_tsquery('english', :searchTerm) OR " +
+            "LOWER(title) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
+            "LOWER(author) LIKE LOWER(CONCAT('%', :searchTerm, '%'))";
+    String FULL_TEXT_RANK = "ts_rank(" + SEARCH_DOCUMENT + ", websearch_to_tsquery('english', :searchTerm))";
+    
     // Find books by type (SELL or GIVEAWAY)
     List<Book> findByType(BookType type);
     
@@ -28,6 +46,73 @@ public interface BookRepository extends JpaRepository<Book, Long> {
            "LOWER(b.author) LIKE LOWER(CONCAT('%', :searchTerm, '%'))")
     List<Book> findByTitleOrAuthorContaining(@Param("searchTerm") String searchTerm);
     
+    // Postgres only: the full-text and trigram indexes come from the V3 migration (see FullTextBookSearch)
+    @Query(value = "SELECT " + ARCHIVE_COLUMNS + " FROM books WHERE " + FULL_TEXT_MATCH + " " +
+           "ORDER BY " + FULL_TEXT_RANK + " DESC, created_at DESC",
+           nativeQuery = true)
+    List<Book> findByFullText(@Param("searchTerm") String searchTerm);
+    
+    // The same search over books and books_archive in one statement, so both are ranked together and read
+    // from one snapshot (a listing being archived is in exactly one of the two tables)
+    @Query(value = "SELECT " + ARCHIVE_COLUMNS + " FROM (" +
+           "SELECT " + ARCHIVE_COLUMNS + ", " + FULL_TEXT_RANK + " AS search_rank FROM books " +
+           "WHERE " + FULL_TEXT_MATCH + " " +
+           "UNION ALL " +
+           "SELECT " + ARCHIVE_COLUMNS + ", " + FULL_TEXT_RANK + " AS search_rank FROM books_archive " +
+           "WHERE " + FULL_TEXT_MATCH +
+           ") matches ORDER BY search_rank DESC, created_at DESC",
+           nativeQuery = true)
+    List<Book> findByFullTextIncludingArchived(@Param("searchTerm") String searchTerm);
+    
     // Find all books ordered by creation date (newest first)
     List<Book> findAllByOrderByCreatedAtDesc();
+    
+    // Browse index projections (see CatalogIndex)
+    @Query("SELECT b.id AS id, b.author AS author, b.price AS price, b.type AS type, b.createdAt AS createdAt FROM Book b")
+    List<BookBrowseRow> findAllBrowseRows();
+    
+    @Query("SELECT b.id AS id, b.author AS author, b.price AS price, b.type AS type, b.createdAt AS createdAt " +
+           "FROM Book b WHERE b.id = :id")
+    Optional<BookBrowseRow> findBrowseRowById(@Param("id") Long id);
+    
+    // Similar listings projections (see SimilarListings)
+    @Query("SELECT b.id AS id, b.title AS title, b.author AS author, b.description AS description FROM Book b")
+    List<BookTextRow> findAllTextRows();
+    
+    @Query("SELECT b.id AS id, b.title AS title, b.author AS author, b.description AS description " +
+           "FROM Book b WHERE b.id = :id")
+    Optional<BookTextRow> findTextRowById(@Param("id") Long id);
+    
+    @Query("SELECT b.id AS id, b.title AS title, b.author AS author, b.description AS description " +
+           "FROM Book b WHERE b.id IN :ids")
+    List<BookTextRow> findTextRowsByIds(@Param("ids") Collection<Long> ids);
+    
+    // Multi-get: every column but the photo bytes, for many ids in one query
+    @Query("SELECT new com.communitybook.lookup.BookSummary(b.id, b.title, b.author, b.price, b.photoUrl, b.type, " +
+           "b.description, b.ownerName, b.contactMethod, b.contactInfo, b.createdAt, b.updatedAt) " +
+           "FROM Book b WHERE b.id IN :ids")
+    List<BookSummary> findSummariesByIds(@Param("ids") Collection<Long> ids);
+    
+    // Perceptual photo hashes (see DuplicatePhotoDetector)
+    @Query("SELECT b.id AS id, b.photoHash AS photoHash FROM Book b WHERE b.photoHash IS NOT NULL")
+    List<BookPhotoHashRow> findAllPhotoHashes();
+    
+    @Query("SELECT b.photoHash FROM Book b WHERE b.id = :id")
+    Optional<Long> findPhotoHashById(@Param("id") Long id);
+    
+    // Archived listings (only read when a caller explicitly asks for includeArchived)
+    @Query(value = "SELECT " + ARCHIVE_COLUMNS + " FROM books_archive ORDER BY created_at DESC", nativeQuery = true)
+    List<Book> findArchivedOrderByCreatedAtDesc();
+    
+    @Query(value = "SELECT " + ARCHIVE_COLUMNS + " FROM books_archive WHERE type = :type " +
+           "ORDER BY created_at DESC", nativeQuery = true)
+    List<Book> findArchivedByType(@Param("type") String type);
+    
+    @Query(value = "SELECT " + ARCHIVE_COLUMNS + " FROM books_archive WHERE id = :id", nativeQuery = true)
+    Optional<Book> findArchivedById(@Param("id") Long id);
+    
+    @Query(value = "SELECT " + ARCHIVE_COLUMNS + " FROM books_archive WHERE " +
+           "LOWER(title) LIKE LOWER(CONCAT('%', :searchTerm, '%')) OR " +
+           "LOWER(author) LIKE LOWER(CONCAT('%', :searchTerm, '%'))", nativeQuery = true)
+    List<Book> findArchivedByTitleOrAuthorContaining(@Param("searchTerm") String searchTerm);
 }
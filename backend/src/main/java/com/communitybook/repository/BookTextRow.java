@@ -0,0 +1,13 @@
+package com.communitybook.repository;
+
+// The free-text columns used to find similar listings
+public interface BookTextRow {
+
+    Long getId();
+
+    String getTitle();
+
+    String getAuthor();
+
+    String getDescription();
+}
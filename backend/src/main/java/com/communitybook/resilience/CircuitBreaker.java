@@ -0,0 +1,131 @@
+package com.communitybook.resilience;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.function.LongSupplier;
+
+// Tracks the outcome of recent database calls for one endpoint and decides whether the next call
+// should be attempted at all.
+//
+// - CLOSED: every call goes through. A call is "bad" if it failed or took longer than the slow-call
+//   threshold. Once the bad share of the last windowSize calls reaches the failure-rate threshold,
+//   the breaker opens.
+// - OPEN: no calls go through until openDuration has passed.
+// - HALF_OPEN: traffic is let back in gradually. At first only 1 in 8 calls is allowed as a probe;
+//   every good probe doubles the share that is let through, and once all calls go through again the
+//   breaker closes. Any bad probe opens it again.
+public class CircuitBreaker {
+
+    public enum State {
+        CLOSED,
+        OPEN,
+        HALF_OPEN
+    }
+
+    private static final int INITIAL_PROBE_INTERVAL = 8;
+
+    private final String name;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final long slowCallNanos;
+    private final long openNanos;
+    private final LongSupplier nanoClock;
+
+    // Guarded by "this"
+    private final boolean[] window;
+    private int windowIndex;
+    private int recordedCalls;
+    private int badCalls;
+    private State state = State.CLOSED;
+    private long openedAt;
+    private int probeInterval;
+    private long halfOpenRequests;
+
+    public CircuitBreaker(String name, int windowSize, int minimumCalls, double failureRateThreshold,
+                          Duration slowCallThreshold, Duration openDuration, LongSupplier nanoClock) {
+        this.name = name;
+        this.windowSize = windowSize;
+        this.minimumCalls = Math.min(minimumCalls, windowSize);
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallNanos = slowCallThreshold.toNanos();
+        this.openNanos = openDuration.toNanos();
+        this.nanoClock = nanoClock;
+        this.window = new boolean[windowSize];
+    }
+
+    public String getName() {
+        return name;
+    }
+
+    public synchronized State getState() {
+        if (state == State.OPEN && nanoClock.getAsLong() - openedAt >= openNanos) {
+            state = State.HALF_OPEN;
+            probeInterval = INITIAL_PROBE_INTERVAL;
+            halfOpenRequests = 0;
+        }
+        return state;
+    }
+
+    public synchronized boolean allowRequest() {
+        switch (getState()) {
+            case CLOSED:
+                return true;
+            case HALF_OPEN:
+                return halfOpenRequests++ % probeInterval == 0;
+            default:
+                return false;
+        }
+    }
+
+    public synchronized void onSuccess(long elapsedNanos) {
+        record(elapsedNanos > slowCallNanos);
+    }
+
+    public synchronized void onFailure() {
+        record(true);
+    }
+
+    private void record(boolean bad) {
+        if (state == State.HALF_OPEN) {
+            if (bad) {
+                open();
+            } else if (probeInterval == 1) {
+                close();
+            } else {
+                probeInterval /= 2;
+                halfOpenRequests = 0;
+            }
+            return;
+        }
+        if (state == State.OPEN) {
+            // A call that started before the breaker opened; it tells us nothing new
+            return;
+        }
+        if (recordedCalls == windowSize && window[windowIndex]) {
+            badCalls--;
+        }
+        window[windowIndex] = bad;
+        if (bad) {
+            badCalls++;
+        }
+        windowIndex = (windowIndex + 1) % windowSize;
+        recordedCalls = Math.min(recordedCalls + 1, windowSize);
+        if (recordedCalls >= minimumCalls && badCalls >= failureRateThreshold * recordedCalls) {
+            open();
+        }
+    }
+
+    private void open() {
+        state = State.OPEN;
+        openedAt = nanoClock.getAsLong();
+    }
+
+    private void close() {
+        state = State.CLOSED;
+        windowIndex = 0;
+        recordedCalls = 0;
+        badCalls = 0;
+        Arrays.fill(window, false);
+    }
+}
@@ -0,0 +1,197 @@
+package com.communitybook.resilience;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.TransactionException;
+import org.springframework.util.unit.DataSize;
+
+import java.time.Duration;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.function.Supplier;
+import java.util.function.ToLongFunction;
+
+// Keeps the read endpoints available when Postgres or the connection pool is struggling.
+//
+// Every read goes through a per-endpoint CircuitBreaker that watches errors and latency. Successful
+// results are remembered as the "last known good" response (in a byte-bounded LRU). When a call fails,
+// or the breaker is open and the call is skipped entirely, the last known good response is returned
+// marked as stale instead of an error. Only when there is nothing to fall back on does the caller see
+// the failure (or a ServiceDegradedException, answered with 503).
+@Component
+public class ReadDegradation {
+
+    private static final Logger log = LoggerFactory.getLogger(ReadDegradation.class);
+
+    private final boolean enabled;
+    private final int windowSize;
+    private final int minimumCalls;
+    private final double failureRateThreshold;
+    private final Duration slowCallThreshold;
+    private final Duration openDuration;
+    private final long maxStaleBytes;
+    private final MeterRegistry meterRegistry;
+
+    private final Map<String, CircuitBreaker> breakers = new ConcurrentHashMap<>();
+    private final Map<String, Counter> staleCounters = new ConcurrentHashMap<>();
+
+    // Guarded by itself; access order = LRU
+    private final LinkedHashMap<String, LastGood> lastGood = new LinkedHashMap<>(64, 0.75f, true);
+    private long lastGoodBytes;
+
+    public ReadDegradation(@Value("${app.degradation.enabled:true}") boolean enabled,
+                           @Value("${app.degradation.window-size:20}") int windowSize,
+                           @Value("${app.degradation.minimum-calls:10}") int minimumCalls,
+                           @Value("${app.degradation.failure-rate-threshold:0.5}") double failureRateThreshold,
+                           @Value("${app.degradation.slow-call-threshold:2s}") Duration slowCallThreshold,
+                           @Value("${app.degradation.open-duration:10s}") Duration openDuration,
+                           @Value("${app.degradation.stale-cache-size:32MB}") DataSize staleCacheSize,
+                           ObjectProvider<MeterRegistry> meterRegistry) {
+        this.enabled = enabled;
+        this.windowSize = windowSize;
+        this.minimumCalls = minimumCalls;
+        this.failureRateThreshold = failureRateThreshold;
+        this.slowCallThreshold = slowCallThreshold;
+        this.openDuration = openDuration;
+        this.maxStaleBytes = staleCacheSize.toBytes();
+        this.meterRegistry = meterRegistry.getIfAvailable();
+    }
+
+    // Runs the call through the endpoint's breaker without any fallback: throws ServiceDegradedException
+    // when the breaker is open. For callers that keep their own last known good copy.
+    public <T> T call(String endpoint, Supplier<T> call) {
+        if (!enabled) {
+            return call.get();
+        }
+        CircuitBreaker breaker = breaker(endpoint);
+        if (!breaker.allowRequest()) {
+            throw new ServiceDegradedException(endpoint);
+        }
+        long start = System.nanoTime();
+        T value;
+        try {
+            value = call.get();
+        } catch (DataAccessException | TransactionException e) {
+            breaker.onFailure();
+            throw e;
+        }
+        breaker.onSuccess(System.nanoTime() - start);
+        return value;
+    }
+
+    // Runs the call through the endpoint's breaker, falling back to the last known good value for the
+    // same endpoint and key. The weigher estimates a value's size in bytes for the stale cache budget.
+    public <T> Result<T> execute(String endpoint, Object key, Supplier<T> call, ToLongFunction<T> weigher) {
+        String cacheKey = endpoint + ":" + key;
+        T value;
+        try {
+            value = call(endpoint, call);
+        } catch (ServiceDegradedException | DataAccessException | TransactionException e) {
+            Result<T> stale = stale(endpoint, cacheKey);
+            if (stale == null) {
+                throw e;
+            }
+            log.warn("Serving stale response for {} ({})", cacheKey, e.getMessage());
+            return stale;
+        }
+        if (enabled) {
+            remember(cacheKey, value, weigher.applyAsLong(value));
+        }
+        return new Result<>(value, false, 0);
+    }
+
+    public CircuitBreaker breaker(String endpoint) {
+        return breakers.computeIfAbsent(endpoint, name -> {
+            CircuitBreaker breaker = new CircuitBreaker(name, windowSize, minimumCalls, failureRateThreshold,
+                    slowCallThreshold, openDuration, System::nanoTime);
+            if (meterRegistry != null) {
+                Gauge.builder("read.circuit.state", breaker, b -> b.getState().ordinal())
+                        .description("0 = closed, 1 = open, 2 = half open")
+                        .tag("endpoint", name)
+                        .register(meterRegistry);
+            }
+            return breaker;
+        });
+    }
+
+    // Call when a response that was not produced by execute() is served stale (e.g. a listing snapshot)
+    public void recordStaleResponse(String endpoint) {
+        if (meterRegistry != null) {
+            staleCounters.computeIfAbsent(endpoint, name -> Counter.builder("read.stale.responses")
+                    .tag("endpoint", name)
+                    .register(meterRegistry)).increment();
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> Result<T> stale(String endpoint, String cacheKey) {
+        LastGood entry;
+        synchronized (lastGood) {
+            entry = lastGood.get(cacheKey);
+        }
+        if (entry == null) {
+            return null;
+        }
+        recordStaleResponse(endpoint);
+        long ageSeconds = (System.currentTimeMillis() - entry.storedAtMillis) / 1000;
+        return new Result<>((T) entry.value, true, ageSeconds);
+    }
+
+    private void remember(String cacheKey, Object value, long bytes) {
+        if (bytes > maxStaleBytes / 4) {
+            return;
+        }
+        synchronized (lastGood) {
+            LastGood previous = lastGood.put(cacheKey, new LastGood(value, bytes, System.currentTimeMillis()));
+            if (previous != null) {
+                lastGoodBytes -= previous.bytes;
+            }
+            lastGoodBytes += bytes;
+            Iterator<LastGood> lru = lastGood.values().iterator();
+            while (lastGoodBytes > maxStaleBytes && lru.hasNext()) {
+                lastGoodBytes -= lru.next().bytes;
+                lru.remove();
+            }
+        }
+    }
+
+    private static final class LastGood {
+        final Object value;
+        final long bytes;
+        final long storedAtMillis;
+
+        LastGood(Object value, long bytes, long storedAtMillis) {
+            this.value = value;
+            this.bytes = bytes;
+            this.storedAtMillis = storedAtMillis;
+        }
+    }
+
+    public static class Result<T> {
+
+        private final T value;
+        private final boolean stale;
+        private final long ageSeconds;
+
+        Result(T value, boolean stale, long ageSeconds) {
+            this.value = value;
+            this.stale = stale;
+            this.ageSeconds = ageSeconds;
+        }
+
+        public T getValue() { return value; }
+
+        public boolean isStale() { return stale; }
+
+        public long getAgeSeconds() { return ageSeconds; }
+    }
+}
@@ -0,0 +1,9 @@
+package com.communitybook.resilience;
+
+// Thrown when an endpoint's circuit breaker is open and there is no earlier response to fall back on
+public class ServiceDegradedException extends RuntimeException {
+
+    public ServiceDegradedException(String endpoint) {
+        super("The catalog is temporarily unavailable (" + endpoint + "), please try again shortly.");
+    }
+}
@@ -0,0 +1,14 @@
+package com.communitybook.search;
+
+import com.communitybook.model.Book;
+
+import java.util.List;
+
+// How BookService.searchBooks finds listings in the books table; chosen per database by SearchConfig
+public interface BookSearch {
+
+    List<Book> search(String term);
+
+    // Searches books and books_archive together and returns one ranking over both
+    List<Book> searchIncludingArchived(String term);
+}
@@ -0,0 +1,28 @@
+package com.communitybook.search;
+
+import com.communitybook.model.Book;
+import com.communitybook.repository.BookRepository;
+
+import java.util.List;
+
+// Postgres search over the indexes created by the V3 migration: full-text matches on title, author and
+// description (BookRepository.SEARCH_DOCUMENT), plus the substring matches on title and author the LIKE
+// search finds, served by the trigram indexes. Best full-text matches first (ts_rank), then newest.
+public class FullTextBookSearch implements BookSearch {
+
+    private final BookRepository bookRepository;
+
+    public FullTextBookSearch(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    @Override
+    public List<Book> search(String term) {
+        return bookRepository.findByFullText(term);
+    }
+
+    @Override
+    public List<Book> searchIncludingArchived(String term) {
+        return bookRepository.findByFullTextIncludingArchived(term);
+    }
+}
@@ -0,0 +1,34 @@
+package com.communitybook.search;
+
+import com.communitybook.model.Book;
+import com.communitybook.repository.BookRepository;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+// Portable search: case-insensitive substring match on title and author. Works on any database (H2 in
+// tests); without trigram indexes it scans the whole table. There is no relevance to rank by, so results
+// that include the archive are ordered newest first.
+public class LikeBookSearch implements BookSearch {
+
+    private final BookRepository bookRepository;
+
+    public LikeBookSearch(BookRepository bookRepository) {
+        this.bookRepository = bookRepository;
+    }
+
+    @Override
+    public List<Book> search(String term) {
+        return bookRepository.findByTitleOrAuthorContaining(term);
+    }
+
+    @Override
+    public List<Book> searchIncludingArchived(String term) {
+        List<Book> books = new ArrayList<>(bookRepository.findByTitleOrAuthorContaining(term));
+        books.addAll(bookRepository.findArchivedByTitleOrAuthorContaining(term));
+        // Stable, so a listing read from both tables while it was being archived keeps its live copy first
+        books.sort(Comparator.comparing(Book::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder())));
+        return books;
+    }
+}
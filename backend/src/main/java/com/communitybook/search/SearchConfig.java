@@ -0,0 +1,59 @@
+package com.communitybook.search;
+
+import com.communitybook.repository.BookRepository;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.jdbc.support.JdbcUtils;
+import org.springframework.jdbc.support.MetaDataAccessException;
+
+import javax.sql.DataSource;
+import java.sql.DatabaseMetaData;
+import java.util.Locale;
+
+// Picks the search implementation according to app.search.strategy:
+// - auto (default): full-text on PostgreSQL, like on anything else
+// - full-text: FullTextBookSearch (needs the V3 migration)
+// - like: LikeBookSearch
+@Configuration
+public class SearchConfig {
+
+    private static final Logger log = LoggerFactory.getLogger(SearchConfig.class);
+
+    @Bean
+    public BookSearch bookSearch(BookRepository bookRepository, DataSource dataSource,
+                                 @Value("${app.search.strategy:auto}") String strategy) {
+        String product = "auto".equals(strategy) ? databaseProduct(dataSource) : null;
+        if (useFullText(strategy, product)) {
+            log.info("Using full-text search");
+            return new FullTextBookSearch(bookRepository);
+        }
+        log.info("Using LIKE search");
+        return new LikeBookSearch(bookRepository);
+    }
+
+    static boolean useFullText(String strategy, String databaseProduct) {
+        switch (strategy) {
+            case "full-text":
+                return true;
+            case "like":
+                return false;
+            case "auto":
+                return databaseProduct != null && databaseProduct.toLowerCase(Locale.ROOT).contains("postgresql");
+            default:
+                throw new IllegalArgumentException("Unknown app.search.strategy '" + strategy
+                        + "', expected one of auto, full-text, like");
+        }
+    }
+
+    private static String databaseProduct(DataSource dataSource) {
+        try {
+            return JdbcUtils.extractDatabaseMetaData(dataSource, DatabaseMetaData::getDatabaseProductName);
+        } catch (MetaDataAccessException e) {
+            log.warn("Could not determine the database product, falling back to LIKE search", e);
+            return null;
+        }
+    }
+}
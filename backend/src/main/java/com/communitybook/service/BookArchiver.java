@@ -0,0 +1,98 @@
+package com.communitybook.service;
+
+import com.communitybook.event.BookChangedEvent.ChangeType;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+// Moves listings older than app.archive.max-age from books into books_archive, so the normal read
+// endpoints (and their indexes and photo_data) only deal with the recent, "hot" part of the catalog.
+//
+// Rows are moved in small batches. Each batch is a single DELETE ... RETURNING / INSERT statement, so
+// it is atomic on its own and only holds row locks for that one statement. SKIP LOCKED means a batch
+// never waits on a row a user is editing, and several instances can run the job at the same time.
+// Every moved id is reported as ARCHIVED, so the in-memory indexes and caches drop just those rows and
+// the invalidation bus sends the batch to the other nodes as one message.
+@Component
+public class BookArchiver {
+
+    private static final Logger log = LoggerFactory.getLogger(BookArchiver.class);
+
+    private static final String MOVE_BATCH_SQL =
+            "WITH moved AS (" +
+            "  DELETE FROM books WHERE id IN (" +
+            "    SELECT id FROM books WHERE created_at < ? ORDER BY created_at LIMIT ? FOR UPDATE SKIP LOCKED" +
+            "  ) RETURNING id, title, author, photo_url, photo_data, price, type, description," +
+            "              owner_name, contact_method, contact_info, created_at, updated_at, photo_hash" +
+            ") " +
+            "INSERT INTO books_archive (id, title, author, photo_url, photo_data, price, type, description," +
+            "                           owner_name, contact_method, contact_info, created_at, updated_at, photo_hash, archived_at) " +
+            "SELECT id, title, author, photo_url, photo_data, price, type, description," +
+            "       owner_name, contact_method, contact_info, created_at, updated_at, photo_hash, now() FROM moved " +
+            "RETURNING id";
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private BookService bookService;
+
+    @Value("${app.archive.enabled:true}")
+    private boolean enabled;
+
+    @Value("${app.archive.max-age:365d}")
+    private Duration maxAge;
+
+    @Value("${app.archive.batch-size:200}")
+    private int batchSize;
+
+    // Pause between batches so the job never competes with user traffic for long
+    @Value("${app.archive.batch-pause:100ms}")
+    private Duration batchPause;
+
+    @Scheduled(initialDelayString = "${app.archive.initial-delay:PT5M}", fixedDelayString = "${app.archive.interval:PT1H}")
+    public void archiveAgedListings() {
+        if (!enabled) {
+            return;
+        }
+        try {
+            archiveCreatedBefore(LocalDateTime.now().minus(maxAge));
+        } catch (RuntimeException e) {
+            log.warn("Archiving aged listings failed, will retry on the next run", e);
+        }
+    }
+
+    // Returns the number of listings moved
+    public int archiveCreatedBefore(LocalDateTime cutoff) {
+        int total = 0;
+        while (true) {
+            List<Long> moved = jdbcTemplate.queryForList(MOVE_BATCH_SQL, Long.class, Timestamp.valueOf(cutoff), batchSize);
+            for (Long id : moved) {
+                bookService.publishChange(id, ChangeType.ARCHIVED);
+            }
+            total += moved.size();
+            if (moved.size() < batchSize) {
+                break;
+            }
+            try {
+                Thread.sleep(batchPause.toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            }
+        }
+        if (total > 0) {
+            log.info("Archived {} listing(s) created before {}", total, cutoff);
+        }
+        return total;
+    }
+}
@@ -1,27 +1,100 @@
 package com.communitybook.service;
 
+import com.communitybook.catalog.BrowsePage;
+import com.communitybook.catalog.BrowseSort;
+import com.communitybook.catalog.CatalogIndex;
+import com.communitybook.event.BookChangedEvent;
+import com.communitybook.event.BookChangedEvent.ChangeType;
+import com.communitybook.lookup.BookLookupResult;
+import com.communitybook.lookup.BookSummary;
+import com.communitybook.lookup.BookSummaryCache;
 import com.communitybook.model.Book;
 import com.communitybook.model.BookType;
 import com.communitybook.repository.BookRepository;
+import com.communitybook.search.BookSearch;
+import com.communitybook.similarity.SimilarListings;
+import com.communitybook.stats.BookStatistics;
+import com.communitybook.stats.BookStats;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.context.event.EventListener;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
 import org.springframework.stereotype.Service;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 @Service
-public class BookService {
+public class BookService implements MeterBinder {
     
     @Autowired
     private BookRepository bookRepository;
     
+    // Notifies in-process caches (e.g. the photo cache) whenever a book row changes
+    @Autowired
+    private ApplicationEventPublisher eventPublisher;
+    
+    // Bumped on every write so cached listings know when they are stale
+    @Autowired
+    private CatalogVersion catalogVersion;
+    
+    // In-memory browse index: filtering, sorting and paging happen without a query
+    @Autowired
+    private CatalogIndex catalogIndex;
+    
+    // MinHash/LSH index behind "similar listings"
+    @Autowired
+    private SimilarListings similarListings;
+    
+    // Counters behind the stats endpoint, maintained from the change events of every write
+    @Autowired
+    private BookStatistics bookStatistics;
+    
+    // Full-text search on Postgres, a LIKE scan elsewhere (see SearchConfig)
+    @Autowired
+    private BookSearch bookSearch;
+    
+    // Listings recently returned by the multi-get endpoints
+    @Autowired
+    private BookSummaryCache bookSummaryCache;
+    
+    // Concurrent identical reads (e.g. a listing shared on social media) share one database call
+    private final SingleFlight<Long, Optional<Book>> bookByIdFlight = new SingleFlight<>("books.byId");
+    private final SingleFlight<String, List<Book>> searchFlight = new SingleFlight<>("books.search");
+    
     public List<Book> getAllBooks() {
         return bookRepository.findAllByOrderByCreatedAtDesc();
     }
     
+    // Normal reads only see the books table; archived listings are included only when asked for
+    public List<Book> getAllBooks(boolean includeArchived) {
+        if (!includeArchived) {
+            return getAllBooks();
+        }
+        return newestFirst(bookRepository.findAllByOrderByCreatedAtDesc(), bookRepository.findArchivedOrderByCreatedAtDesc());
+    }
+    
     public Optional<Book> getBookById(Long id) {
-        return bookRepository.findById(id);
+        return bookByIdFlight.execute(id, () -> bookRepository.findById(id));
+    }
+    
+    public Optional<Book> getBookById(Long id, boolean includeArchived) {
+        Optional<Book> book = getBookById(id);
+        if (book.isPresent() || !includeArchived) {
+            return book;
+        }
+        return bookRepository.findArchivedById(id);
     }
     
     public Book saveBook(Book book) {
@@ -48,19 +121,116 @@ public class BookService {
             throw new IllegalArgumentException("Price must be provided and non-negative for books for sale.");
         }
         // Add more business rules as needed
-        return bookRepository.save(book);
+        ChangeType changeType = book.getId() == null ? ChangeType.CREATED : ChangeType.UPDATED;
+        Book savedBook = bookRepository.save(book);
+        publishChange(savedBook.getId(), changeType);
+        return savedBook;
     }
     
     public void deleteBook(Long id) {
         bookRepository.deleteById(id);
+        publishChange(id, ChangeType.DELETED);
     }
     
     public List<Book> getBooksByType(BookType type) {
         return bookRepository.findByType(type);
     }
     
+    public List<Book> getBooksByType(BookType type, boolean includeArchived) {
+        if (!includeArchived) {
+            return getBooksByType(type);
+        }
+        return newestFirst(bookRepository.findByType(type), bookRepository.findArchivedByType(type.name()));
+    }
+    
+    public static final int MAX_LOOKUP_IDS = 500;
+    
+    // Many listings by id (without photo bytes) in request order; duplicates are returned once and ids that
+    // match nothing are listed separately. Cached listings are used first, the rest come from one IN query.
+    public BookLookupResult lookupBooks(List<Long> ids) {
+        if (ids == null || ids.isEmpty()) {
+            throw new IllegalArgumentException("At least one id is required.");
+        }
+        LinkedHashSet<Long> requested = new LinkedHashSet<>();
+        for (Long id : ids) {
+            if (id != null) {
+                requested.add(id);
+            }
+        }
+        if (requested.size() > MAX_LOOKUP_IDS) {
+            throw new IllegalArgumentException("At most " + MAX_LOOKUP_IDS + " ids can be looked up at once.");
+        }
+        Map<Long, BookSummary> found = new HashMap<>();
+        if (bookSummaryCache.getAll(requested, found) < requested.size()) {
+            List<Long> toLoad = new ArrayList<>(requested.size() - found.size());
+            for (Long id : requested) {
+                if (!found.containsKey(id)) {
+                    toLoad.add(id);
+                }
+            }
+            long stamp = bookSummaryCache.invalidationStamp();
+            List<BookSummary> loaded = bookRepository.findSummariesByIds(toLoad);
+            bookSummaryCache.putAll(loaded, stamp);
+            for (BookSummary summary : loaded) {
+                found.put(summary.getId(), summary);
+            }
+        }
+        List<BookSummary> books = new ArrayList<>(found.size());
+        List<Long> missingIds = new ArrayList<>();
+        for (Long id : requested) {
+            BookSummary summary = found.get(id);
+            if (summary != null) {
+                books.add(summary);
+            } else {
+                missingIds.add(id);
+            }
+        }
+        return new BookLookupResult(books, missingIds);
+    }
+    
+    public static final int MAX_BROWSE_PAGE_SIZE = 100;
+    
+    // Browse listings (type and author filters are optional); only the books on the requested page are loaded
+    public BrowsePage browseBooks(BookType type, String author, BrowseSort sort, int page, int size) {
+        if (page < 0) {
+            throw new IllegalArgumentException("Page must not be negative.");
+        }
+        if (size < 1 || size > MAX_BROWSE_PAGE_SIZE) {
+            throw new IllegalArgumentException("Page size must be between 1 and " + MAX_BROWSE_PAGE_SIZE + ".");
+        }
+        CatalogIndex.Result result = catalogIndex.browse(type, author, sort, page, size);
+        return new BrowsePage(findAllInOrder(result.getIds()), page, size, result.getTotal());
+    }
+    
+    public static final int MAX_SIMILAR_LIMIT = 50;
+    
+    // Listings similar to the given one (by title, author and description), most similar first;
+    // empty if the book does not exist
+    public Optional<List<Book>> getSimilarBooks(Long id, int limit) {
+        if (limit < 1 || limit > MAX_SIMILAR_LIMIT) {
+            throw new IllegalArgumentException("Limit must be between 1 and " + MAX_SIMILAR_LIMIT + ".");
+        }
+        // Only existence matters here; loading the book would also read its photo bytes
+        if (!bookRepository.existsById(id)) {
+            return Optional.empty();
+        }
+        return Optional.of(findAllInOrder(similarListings.similarTo(id, limit)));
+    }
+    
+    // Catalog statistics from in-memory counters; no query once they have been built
+    public BookStats getStats() {
+        return bookStatistics.get();
+    }
+    
     public List<Book> searchBooks(String searchTerm) {
-        return bookRepository.findByTitleOrAuthorContaining(searchTerm);
+        return searchFlight.execute(searchTerm, () -> bookSearch.search(searchTerm));
+    }
+    
+    public List<Book> searchBooks(String searchTerm, boolean includeArchived) {
+        if (!includeArchived) {
+            return searchBooks(searchTerm);
+        }
+        return distinctById(bookSearch.searchIncludingArchived(searchTerm));
     }
     
     
@@ -98,8 +268,80 @@ public class BookService {
                     book.setOwnerName(updatedBook.getOwnerName());
                     book.setContactMethod(updatedBook.getContactMethod());
                     book.setContactInfo(updatedBook.getContactInfo());
-                    return bookRepository.save(book);
+                    Book savedBook = bookRepository.save(book);
+                    publishChange(id, ChangeType.UPDATED);
+                    return savedBook;
                 })
                 .orElseThrow(() -> new RuntimeException("Book not found with id: " + id));
     }
+    
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        bookByIdFlight.bindTo(registry);
+        searchFlight.bindTo(registry);
+    }
+    
+    // Loads the given books with one query, in the given order; a book deleted in the meantime is left out
+    private List<Book> findAllInOrder(long[] ids) {
+        List<Long> idList = new ArrayList<>(ids.length);
+        for (long id : ids) {
+            idList.add(id);
+        }
+        Map<Long, Book> booksById = new HashMap<>();
+        for (Book book : bookRepository.findAllById(idList)) {
+            booksById.put(book.getId(), book);
+        }
+        List<Book> books = new ArrayList<>(ids.length);
+        for (Long id : idList) {
+            Book book = booksById.get(id);
+            if (book != null) {
+                books.add(book);
+            }
+        }
+        return books;
+    }
+    
+    private static List<Book> newestFirst(List<Book> hot, List<Book> archived) {
+        List<Book> books = new ArrayList<>(hot.size() + archived.size());
+        books.addAll(hot);
+        books.addAll(archived);
+        books.sort(Comparator.comparing(Book::getCreatedAt, Comparator.nullsLast(Comparator.reverseOrder())));
+        return distinctById(books);
+    }
+    
+    // Live and archived rows read by separate queries can both hold a listing that was archived in between;
+    // keeps the first occurrence of each id
+    private static List<Book> distinctById(List<Book> books) {
+        Set<Long> seen = new HashSet<>();
+        List<Book> distinct = new ArrayList<>(books.size());
+        for (Book book : books) {
+            if (seen.add(book.getId())) {
+                distinct.add(book);
+            }
+        }
+        return distinct;
+    }
+    
+    // A change made on another node must not be answered from a lookup that started before it either.
+    // Runs ahead of the other listeners, as publishChange forgets before publishing a local change.
+    @EventListener
+    @Order(Ordered.HIGHEST_PRECEDENCE)
+    public void onBookChanged(BookChangedEvent event) {
+        if (!event.isRemote()) {
+            return;
+        }
+        if (event.isFullInvalidation()) {
+            bookByIdFlight.forgetAll();
+        } else {
+            bookByIdFlight.forget(event.getBookId());
+        }
+        searchFlight.forgetAll();
+    }
+    
+    void publishChange(Long id, ChangeType changeType) {
+        // Readers arriving from now on must not join a lookup that started before this write
+        bookByIdFlight.forget(id);
+        searchFlight.forgetAll();
+        eventPublisher.publishEvent(new BookChangedEvent(id, changeType, catalogVersion.increment()));
+    }
 }
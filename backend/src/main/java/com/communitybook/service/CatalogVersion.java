@@ -0,0 +1,22 @@
+package com.communitybook.service;
+
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.atomic.AtomicLong;
+
+// A counter that goes up every time the catalog (the books table) changes.
+// Anything that caches data derived from the catalog can remember the version it was built at
+// and compare it with the current one to know whether it is stale.
+@Component
+public class CatalogVersion {
+
+    private final AtomicLong version = new AtomicLong();
+
+    public long current() {
+        return version.get();
+    }
+
+    public long increment() {
+        return version.incrementAndGet();
+    }
+}
@@ -0,0 +1,105 @@
+package com.communitybook.similarity;
+
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Set;
+
+// Turns a listing's text into a set of hashed shingles: the words and word pairs of title, author and
+// description (minus a few filler words), plus the whole author name. Sets are sorted, duplicate-free
+// long arrays, so exact Jaccard similarity is a single merge pass.
+final class Shingles {
+
+    private static final Set<String> STOP_WORDS = Set.of(
+            "a", "an", "and", "the", "of", "to", "in", "on", "for", "with", "is", "it", "by", "at", "or");
+
+    private static final long[] NONE = new long[0];
+
+    private Shingles() {
+    }
+
+    static long[] of(String title, String author, String description) {
+        long[] out = new long[16];
+        int count = 0;
+        for (String text : new String[] {title, author, description}) {
+            if (text == null || text.isBlank()) {
+                continue;
+            }
+            long previous = 0;
+            boolean hasPrevious = false;
+            for (String word : text.toLowerCase(Locale.ROOT).split("[^\\p{L}\\p{N}]+")) {
+                if (word.isEmpty() || STOP_WORDS.contains(word)) {
+                    continue;
+                }
+                long hash = hash(word);
+                if (count + 2 > out.length) {
+                    out = Arrays.copyOf(out, out.length * 2);
+                }
+                out[count++] = hash;
+                if (hasPrevious) {
+                    out[count++] = mix(previous * 31 + hash);
+                }
+                previous = hash;
+                hasPrevious = true;
+            }
+        }
+        if (author != null && !author.isBlank()) {
+            if (count == out.length) {
+                out = Arrays.copyOf(out, count + 1);
+            }
+            out[count++] = mix(hash(author.trim().toLowerCase(Locale.ROOT)) ^ 0x5bd1e995L);
+        }
+        if (count == 0) {
+            return NONE;
+        }
+        Arrays.sort(out, 0, count);
+        int distinct = 1;
+        for (int i = 1; i < count; i++) {
+            if (out[i] != out[distinct - 1]) {
+                out[distinct++] = out[i];
+            }
+        }
+        return Arrays.copyOf(out, distinct);
+    }
+
+    // |a ∩ b| / |a ∪ b| of two sorted shingle sets
+    static double jaccard(long[] a, long[] b) {
+        if (a.length == 0 || b.length == 0) {
+            return 0;
+        }
+        int i = 0;
+        int j = 0;
+        int shared = 0;
+        while (i < a.length && j < b.length) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                shared++;
+                i++;
+                j++;
+            }
+        }
+        return (double) shared / (a.length + b.length - shared);
+    }
+
+    // 64-bit FNV-1a
+    private static long hash(String word) {
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < word.length(); i++) {
+            hash ^= word.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return hash;
+    }
+
+    // MurmurHash3 finalizer: spreads every input bit over the whole output
+    static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+}
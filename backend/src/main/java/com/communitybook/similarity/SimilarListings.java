@@ -0,0 +1,267 @@
+package com.communitybook.similarity;
+
+import com.communitybook.event.BookChangedEvent;
+import com.communitybook.event.BookChangedEvent.ChangeType;
+import com.communitybook.repository.BookRepository;
+import com.communitybook.repository.BookTextRow;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+// "More like this" for a listing: LSH candidates from the SimilarityIndex, re-ranked by exact Jaccard
+// similarity of their shingles.
+//
+// Only signatures are kept in memory. Re-ranking loads the text of the query and its candidates with
+// one IN query, which bounds the database work per request no matter how large the catalog is.
+// The index is built at startup and follows BookChangedEvents (saveBook, updateBook, deleteBook,
+// archiving and invalidations from other instances) by re-reading the single changed row before taking
+// the write lock, so writes never wait for a database read. A full invalidation (or a failed update)
+// rebuilds the index on a background thread while requests keep using the old one; changes arriving
+// during the rebuild are replayed onto the new index before it replaces the old. Until the first build
+// has succeeded, no similar listings are returned.
+@Component
+public class SimilarListings implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(SimilarListings.class);
+
+    // Re-rank this many candidates per requested result, so a poor signature estimate rarely hides a good match
+    private static final int RERANK_FACTOR = 5;
+    private static final int MIN_RERANK = 50;
+    // Below this, listings have little more than a common word in common
+    private static final double MIN_SIMILARITY = 0.05;
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private final int bands;
+    private final int rowsPerBand;
+
+    // null = not built yet
+    private volatile SimilarityIndex index;
+    private final Object writeLock = new Object();
+    // Bumped whenever index is replaced; a row read before that is not applied to the new index
+    private long generation;
+    private final AtomicLong tickets = new AtomicLong();
+    // Latest ticket per book with a change in flight, so an older read never overwrites a newer one
+    private final Map<Long, Long> latestTickets = new ConcurrentHashMap<>();
+
+    // Only one build at a time; ids changed while it reads the table are replayed before it is swapped in
+    private final Object rebuildLock = new Object();
+    private Set<Long> changedDuringRebuild;
+    private final AtomicBoolean rebuildQueued = new AtomicBoolean();
+    private final ExecutorService rebuildExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "similarity-index-rebuild");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    public SimilarListings(@Value("${app.similarity.bands:16}") int bands,
+                           @Value("${app.similarity.rows-per-band:2}") int rowsPerBand) {
+        this.bands = bands;
+        this.rowsPerBand = rowsPerBand;
+    }
+
+    // Ids of the listings most similar to the given one, best first
+    public long[] similarTo(long id, int limit) {
+        SimilarityIndex current = index;
+        if (current == null) {
+            // The startup build failed or has not finished; do not hold up the request for it
+            scheduleRebuild();
+            return new long[0];
+        }
+        long[] candidates = current.candidates(id, Math.max(limit * RERANK_FACTOR, MIN_RERANK));
+        if (candidates.length == 0) {
+            return candidates;
+        }
+        List<Long> ids = new ArrayList<>(candidates.length + 1);
+        ids.add(id);
+        for (long candidate : candidates) {
+            ids.add(candidate);
+        }
+        Map<Long, long[]> shingles = new HashMap<>();
+        for (BookTextRow row : bookRepository.findTextRowsByIds(ids)) {
+            shingles.put(row.getId(), shinglesOf(row));
+        }
+        long[] query = shingles.get(id);
+        if (query == null) {
+            return new long[0];
+        }
+        return SimilarityIndex.rerank(query, candidates, shingles::get, limit, MIN_SIMILARITY);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildAtStartup() {
+        try {
+            rebuild();
+        } catch (DataAccessException e) {
+            log.warn("Could not build the similarity index at startup, it will be built on first use", e);
+        }
+    }
+
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        if (event.isFullInvalidation()) {
+            scheduleRebuild();
+            return;
+        }
+        long id = event.getBookId();
+        long startedInGeneration;
+        synchronized (writeLock) {
+            if (changedDuringRebuild != null) {
+                changedDuringRebuild.add(id);
+            }
+            if (index == null) {
+                return;
+            }
+            startedInGeneration = generation;
+        }
+        long ticket = tickets.incrementAndGet();
+        latestTickets.put(id, ticket);
+        try {
+            Optional<BookTextRow> row = Optional.empty();
+            if (event.getChangeType() != ChangeType.DELETED && event.getChangeType() != ChangeType.ARCHIVED) {
+                try {
+                    row = bookRepository.findTextRowById(id);
+                } catch (DataAccessException e) {
+                    log.warn("Could not apply change to book {} to the similarity index, it will be rebuilt", id, e);
+                    scheduleRebuild();
+                    return;
+                }
+            }
+            long[] shingles = row.map(SimilarListings::shinglesOf).orElse(null);
+            synchronized (writeLock) {
+                SimilarityIndex current = index;
+                if (current == null || generation != startedInGeneration
+                        || !Long.valueOf(ticket).equals(latestTickets.get(id))) {
+                    return;
+                }
+                if (shingles != null) {
+                    current.put(id, shingles);
+                } else {
+                    current.remove(id);
+                }
+            }
+        } finally {
+            latestTickets.remove(id, ticket);
+        }
+    }
+
+    public void clear() {
+        synchronized (writeLock) {
+            index = null;
+            generation++;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        rebuildExecutor.shutdownNow();
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("similarity.index.books", this, listings -> {
+                    SimilarityIndex current = listings.index;
+                    return current == null ? 0 : current.size();
+                })
+                .description("Listings held in the similar listings index")
+                .register(registry);
+        Gauge.builder("similarity.index.bytes", this, listings -> {
+                    SimilarityIndex current = listings.index;
+                    return current == null ? 0 : current.estimatedBytes();
+                })
+                .description("Approximate heap used by the similar listings index")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    // Queues a background rebuild unless one is already waiting to start
+    private void scheduleRebuild() {
+        if (!rebuildQueued.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            rebuildExecutor.execute(() -> {
+                rebuildQueued.set(false);
+                try {
+                    rebuild();
+                } catch (DataAccessException e) {
+                    log.warn("Rebuilding the similarity index failed, keeping the previous one", e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            rebuildQueued.set(false);
+        }
+    }
+
+    // Reads the table and builds the new index without holding writeLock, so requests and updates go on
+    // against the old index
+    private void rebuild() {
+        synchronized (rebuildLock) {
+            synchronized (writeLock) {
+                changedDuringRebuild = new HashSet<>();
+            }
+            try {
+                long start = System.nanoTime();
+                List<BookTextRow> rows = bookRepository.findAllTextRows();
+                SimilarityIndex fresh = new SimilarityIndex(bands, rowsPerBand, rows.size() + rows.size() / 4);
+                for (BookTextRow row : rows) {
+                    fresh.put(row.getId(), shinglesOf(row));
+                }
+                while (true) {
+                    Set<Long> changed;
+                    synchronized (writeLock) {
+                        changed = changedDuringRebuild;
+                        if (changed.isEmpty()) {
+                            index = fresh;
+                            generation++;
+                            break;
+                        }
+                        changedDuringRebuild = new HashSet<>();
+                    }
+                    for (Long id : changed) {
+                        Optional<BookTextRow> row = bookRepository.findTextRowById(id);
+                        if (row.isPresent()) {
+                            fresh.put(id, shinglesOf(row.get()));
+                        } else {
+                            fresh.remove(id);
+                        }
+                    }
+                }
+                log.info("Built the similarity index for {} listings in {} ms", fresh.size(),
+                        (System.nanoTime() - start) / 1_000_000);
+            } finally {
+                synchronized (writeLock) {
+                    changedDuringRebuild = null;
+                }
+            }
+        }
+    }
+
+    private static long[] shinglesOf(BookTextRow row) {
+        return Shingles.of(row.getTitle(), row.getAuthor(), row.getDescription());
+    }
+}
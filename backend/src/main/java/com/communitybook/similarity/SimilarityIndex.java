@@ -0,0 +1,302 @@
+package com.communitybook.similarity;
+
+import com.communitybook.util.LongIntHashMap;
+
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.function.LongFunction;
+
+// Locality-sensitive hashing index over MinHash signatures of listing shingles.
+//
+// Each listing gets a signature of bands * rowsPerBand 16-bit MinHash values, computed with one-permutation
+// hashing (every shingle is hashed once and lands in one of the bins). Listings whose signatures agree on
+// all rows of at least one band become candidates; with the default 16 bands of 2 rows, pairs at Jaccard
+// 0.3 are found ~80% of the time and pairs at 0.5 more than 99% of the time. Lookups only walk the
+// buckets of the query's own bands, so their cost depends on how many listings are similar, not on the
+// catalog size.
+//
+// Storage is a handful of flat arrays indexed by slot: ids, signatures, and per band a bucket table plus
+// an intrusive "next in bucket" chain. Removed listings leave a dead slot behind that is skipped until the
+// arrays are compacted. Reads share a read lock; put/remove take the write lock.
+public class SimilarityIndex {
+
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final int NONE = -1;
+    // Upper bound on the bucket entries looked at per query, so one hugely popular band value (e.g. many
+    // copies of the same listing) cannot make a lookup slow
+    private static final int MAX_SCANNED = 4096;
+
+    private final int bands;
+    private final int rowsPerBand;
+    private final int signatureLength;
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private int capacity;
+    private int used;
+    private int dead;
+    private long[] slotIds;
+    private char[] signatures;
+    private int[][] bucketHeads;
+    private int[][] nextInBucket;
+    private int bucketMask;
+    private BitSet alive;
+    private LongIntHashMap slotsById;
+
+    public SimilarityIndex(int bands, int rowsPerBand) {
+        this(bands, rowsPerBand, INITIAL_CAPACITY);
+    }
+
+    public SimilarityIndex(int bands, int rowsPerBand, int expectedSize) {
+        if (bands < 1 || rowsPerBand < 1) {
+            throw new IllegalArgumentException("bands and rowsPerBand must be positive");
+        }
+        this.bands = bands;
+        this.rowsPerBand = rowsPerBand;
+        this.signatureLength = bands * rowsPerBand;
+        allocate(Math.max(INITIAL_CAPACITY, expectedSize));
+    }
+
+    // Adds or replaces a listing. Listings without any text are not indexed.
+    public void put(long id, long[] shingles) {
+        char[] signature = signature(shingles);
+        lock.writeLock().lock();
+        try {
+            removeSlot(id);
+            if (signature == null) {
+                return;
+            }
+            if (used == capacity) {
+                // Reclaim dead slots if that frees enough room, otherwise grow
+                rebuild(size() * 2 > capacity ? capacity * 2 : capacity);
+            }
+            int slot = used++;
+            slotIds[slot] = id;
+            System.arraycopy(signature, 0, signatures, slot * signatureLength, signatureLength);
+            link(slot);
+            alive.set(slot);
+            slotsById.put(id, slot);
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public void remove(long id) {
+        lock.writeLock().lock();
+        try {
+            removeSlot(id);
+            if (dead > INITIAL_CAPACITY && dead * 4 > used) {
+                rebuild(capacity);
+            }
+        } finally {
+            lock.writeLock().unlock();
+        }
+    }
+
+    public boolean contains(long id) {
+        lock.readLock().lock();
+        try {
+            return slotsById.get(id) != LongIntHashMap.MISSING;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    public int size() {
+        return slotsById.size();
+    }
+
+    // Rough heap footprint of all arrays
+    public long estimatedBytes() {
+        lock.readLock().lock();
+        try {
+            return capacity * (8L + 2L * signatureLength + 4L * bands) + 4L * bands * (bucketMask + 1)
+                    + slotsById.estimatedBytes() + capacity / 8;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Up to max candidate ids sharing at least one band with the listing, most similar signature first
+    public long[] candidates(long id, int max) {
+        lock.readLock().lock();
+        try {
+            int slot = slotsById.get(id);
+            if (slot == LongIntHashMap.MISSING) {
+                return new long[0];
+            }
+            int[] found = new int[64];
+            int count = 0;
+            int scanned = 0;
+            for (int band = 0; band < bands && scanned < MAX_SCANNED; band++) {
+                int bucket = bandHash(slot, band) & bucketMask;
+                for (int other = bucketHeads[band][bucket]; other != NONE && scanned < MAX_SCANNED;
+                     other = nextInBucket[band][other]) {
+                    scanned++;
+                    if (other != slot && alive.get(other) && sameBand(slot, other, band)) {
+                        if (count == found.length) {
+                            found = Arrays.copyOf(found, count * 2);
+                        }
+                        found[count++] = other;
+                    }
+                }
+            }
+            // Rank the distinct candidates by how many signature positions agree (an estimate of Jaccard)
+            Arrays.sort(found, 0, count);
+            long[] ranked = new long[count];
+            int distinct = 0;
+            for (int i = 0; i < count; i++) {
+                if (i > 0 && found[i] == found[i - 1]) {
+                    continue;
+                }
+                long agreement = agreement(slot, found[i]);
+                // Higher agreement sorts first; ties keep slot (insertion) order
+                ranked[distinct++] = ((signatureLength - agreement) << 32) | found[i];
+            }
+            Arrays.sort(ranked, 0, distinct);
+            long[] ids = new long[Math.min(max, distinct)];
+            for (int i = 0; i < ids.length; i++) {
+                ids[i] = slotIds[(int) ranked[i]];
+            }
+            return ids;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    // Exact re-ranking: the candidates with the highest true Jaccard similarity to the query, best first.
+    // shinglesOf returns null for listings that no longer exist.
+    public static long[] rerank(long[] query, long[] candidates, LongFunction<long[]> shinglesOf,
+                                int limit, double minSimilarity) {
+        double[] scores = new double[candidates.length];
+        Integer[] order = new Integer[candidates.length];
+        int kept = 0;
+        for (int i = 0; i < candidates.length; i++) {
+            long[] shingles = shinglesOf.apply(candidates[i]);
+            double score = shingles == null ? 0 : Shingles.jaccard(query, shingles);
+            if (score >= minSimilarity) {
+                scores[i] = score;
+                order[kept++] = i;
+            }
+        }
+        Arrays.sort(order, 0, kept, (a, b) -> Double.compare(scores[b], scores[a]));
+        long[] ids = new long[Math.min(limit, kept)];
+        for (int i = 0; i < ids.length; i++) {
+            ids[i] = candidates[order[i]];
+        }
+        return ids;
+    }
+
+    // One-permutation MinHash with rotation densification: each shingle hash picks a bin with its high bits
+    // and competes for that bin's minimum with its low bits; an empty bin borrows from the next non-empty
+    // one. Only 16 bits of each minimum are kept. Returns null for an empty shingle set.
+    char[] signature(long[] shingles) {
+        if (shingles.length == 0) {
+            return null;
+        }
+        long[] minimums = new long[signatureLength];
+        Arrays.fill(minimums, Long.MAX_VALUE);
+        for (long shingle : shingles) {
+            long hash = Shingles.mix(shingle ^ 0x9E3779B97F4A7C15L);
+            int bin = (int) (((hash >>> 32) * signatureLength) >>> 32);
+            long value = hash & 0xFFFFFFFFL;
+            if (value < minimums[bin]) {
+                minimums[bin] = value;
+            }
+        }
+        char[] signature = new char[signatureLength];
+        for (int bin = 0; bin < signatureLength; bin++) {
+            int source = bin;
+            int distance = 0;
+            while (minimums[source] == Long.MAX_VALUE) {
+                source = (source + 1) % signatureLength;
+                distance++;
+            }
+            signature[bin] = (char) Shingles.mix(minimums[source] + distance * 0x632BE59BD9B4E019L);
+        }
+        return signature;
+    }
+
+    private void removeSlot(long id) {
+        int slot = slotsById.remove(id);
+        if (slot != LongIntHashMap.MISSING) {
+            alive.clear(slot);
+            dead++;
+        }
+    }
+
+    private void link(int slot) {
+        for (int band = 0; band < bands; band++) {
+            int bucket = bandHash(slot, band) & bucketMask;
+            nextInBucket[band][slot] = bucketHeads[band][bucket];
+            bucketHeads[band][bucket] = slot;
+        }
+    }
+
+    private int bandHash(int slot, int band) {
+        int offset = slot * signatureLength + band * rowsPerBand;
+        long hash = band;
+        for (int row = 0; row < rowsPerBand; row++) {
+            hash = (hash << 16) ^ (hash >>> 48) ^ signatures[offset + row];
+        }
+        return (int) Shingles.mix(hash);
+    }
+
+    private boolean sameBand(int a, int b, int band) {
+        int offsetA = a * signatureLength + band * rowsPerBand;
+        int offsetB = b * signatureLength + band * rowsPerBand;
+        for (int row = 0; row < rowsPerBand; row++) {
+            if (signatures[offsetA + row] != signatures[offsetB + row]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private long agreement(int a, int b) {
+        int offsetA = a * signatureLength;
+        int offsetB = b * signatureLength;
+        long agree = 0;
+        for (int i = 0; i < signatureLength; i++) {
+            if (signatures[offsetA + i] == signatures[offsetB + i]) {
+                agree++;
+            }
+        }
+        return agree;
+    }
+
+    private void allocate(int newCapacity) {
+        capacity = newCapacity;
+        used = 0;
+        dead = 0;
+        slotIds = new long[capacity];
+        signatures = new char[capacity * signatureLength];
+        // About one bucket per slot keeps chains short without storing the band values themselves
+        int buckets = Integer.highestOneBit(capacity - 1) << 1;
+        bucketMask = buckets - 1;
+        bucketHeads = new int[bands][buckets];
+        nextInBucket = new int[bands][capacity];
+        for (int[] heads : bucketHeads) {
+            Arrays.fill(heads, NONE);
+        }
+        alive = new BitSet(capacity);
+        slotsById = new LongIntHashMap(capacity);
+    }
+
+    // Copies the live slots into fresh arrays of the given capacity, dropping dead slots
+    private void rebuild(int newCapacity) {
+        long[] oldIds = slotIds;
+        char[] oldSignatures = signatures;
+        BitSet oldAlive = alive;
+        allocate(Math.max(newCapacity, INITIAL_CAPACITY));
+        for (int old = oldAlive.nextSetBit(0); old >= 0; old = oldAlive.nextSetBit(old + 1)) {
+            int slot = used++;
+            slotIds[slot] = oldIds[old];
+            System.arraycopy(oldSignatures, old * signatureLength, signatures, slot * signatureLength, signatureLength);
+            link(slot);
+            alive.set(slot);
+            slotsById.put(oldIds[old], slot);
+        }
+    }
+}
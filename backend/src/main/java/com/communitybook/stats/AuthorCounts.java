@@ -0,0 +1,82 @@
+package com.communitybook.stats;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeSet;
+
+// Exact listing counts per author, plus a ranking so the top authors can be read without scanning them all.
+//
+// Memory grows with the number of distinct authors (roughly 150 bytes each), not with the number of
+// listings, and a catalog has far fewer authors than listings. An exact count keeps small authors right
+// too: a fixed-size sketch overestimates every author by a share of all listings, which swamps
+// the counts of authors with a handful of books once the catalog is large.
+final class AuthorCounts {
+
+    private static final Comparator<Author> RANKING = Comparator.comparingInt((Author author) -> author.count)
+            .reversed()
+            .thenComparing(author -> author.name)
+            .thenComparingLong(author -> author.key);
+
+    private final Map<Long, Author> byKey = new HashMap<>();
+    // Authors with at least one listing, highest count first
+    private final TreeSet<Author> ranking = new TreeSet<>(RANKING);
+
+    // name is only needed the first time an author is seen, it is shown as given then
+    void add(long key, String name, int delta) {
+        Author author = byKey.get(key);
+        if (author == null) {
+            if (delta <= 0) {
+                return;
+            }
+            author = new Author(key, name == null ? "" : name);
+            byKey.put(key, author);
+        } else {
+            ranking.remove(author);
+        }
+        author.count += delta;
+        if (author.count <= 0) {
+            byKey.remove(key);
+        } else {
+            ranking.add(author);
+        }
+    }
+
+    int count(long key) {
+        Author author = byKey.get(key);
+        return author == null ? 0 : author.count;
+    }
+
+    int size() {
+        return byKey.size();
+    }
+
+    // The authors with the most listings, highest first
+    List<BookStats.AuthorCount> top(int limit) {
+        List<BookStats.AuthorCount> top = new ArrayList<>(Math.min(limit, ranking.size()));
+        for (Author author : ranking) {
+            if (top.size() == limit) {
+                break;
+            }
+            top.add(new BookStats.AuthorCount(author.name, author.count));
+        }
+        return top;
+    }
+
+    long estimatedBytes() {
+        return byKey.size() * 150L;
+    }
+
+    private static final class Author {
+        final long key;
+        final String name;
+        int count;
+
+        Author(long key, String name) {
+            this.key = key;
+            this.name = name;
+        }
+    }
+}
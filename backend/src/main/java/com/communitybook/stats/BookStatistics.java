@@ -0,0 +1,208 @@
+package com.communitybook.stats;
+
+import com.communitybook.event.BookChangedEvent;
+import com.communitybook.event.BookChangedEvent.ChangeType;
+import com.communitybook.repository.BookBrowseRow;
+import com.communitybook.repository.BookRepository;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.dao.DataAccessException;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDate;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+// Catalog statistics (counts per type, new listings per day, average and median sell price, top authors)
+// kept up to date in memory, so GET /v1/books/stats never runs an aggregate query.
+//
+// The counters are built from the database at startup and follow BookChangedEvents by re-reading the
+// single changed row. Every change publishes a fresh immutable BookStats, so a stats request is one
+// volatile read. A scheduled reconcile rebuilds everything from the database to correct anything the
+// events missed (e.g. direct SQL).
+@Component
+public class BookStatistics implements MeterBinder {
+
+    private static final Logger log = LoggerFactory.getLogger(BookStatistics.class);
+
+    @Autowired
+    private BookRepository bookRepository;
+
+    private final int days;
+    private final int topAuthors;
+
+    // null = not built; both only change under writeLock
+    private volatile StatsCounters counters;
+    private volatile BookStats stats;
+    // The day stats ends on; after midnight the per-day window is shifted on the next request
+    private volatile LocalDate statsDay;
+    private final Object writeLock = new Object();
+
+    // Only one rebuild at a time; changes arriving while it reads the table are replayed afterwards
+    private final Object rebuildLock = new Object();
+    private Set<Long> changedDuringRebuild;
+    private boolean invalidatedDuringRebuild;
+
+    public BookStatistics(@Value("${app.stats.days:30}") int days,
+                          @Value("${app.stats.top-authors:10}") int topAuthors) {
+        this.days = days;
+        this.topAuthors = topAuthors;
+    }
+
+    public BookStats get() {
+        BookStats current = stats;
+        if (current != null && LocalDate.now().equals(statsDay)) {
+            return current;
+        }
+        if (current != null) {
+            synchronized (writeLock) {
+                StatsCounters latest = counters;
+                if (latest != null) {
+                    return publish(latest);
+                }
+            }
+        }
+        // Only before the startup build has finished, or after it failed or a full invalidation
+        synchronized (rebuildLock) {
+            current = stats;
+            return current != null ? current : rebuild();
+        }
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildAtStartup() {
+        try {
+            synchronized (rebuildLock) {
+                rebuild();
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not build the catalog statistics at startup, the first stats request will", e);
+        }
+    }
+
+    @Scheduled(initialDelayString = "${app.stats.reconcile-interval:PT1H}",
+               fixedDelayString = "${app.stats.reconcile-interval:PT1H}")
+    public void reconcile() {
+        try {
+            synchronized (rebuildLock) {
+                BookStats before = stats;
+                BookStats after = rebuild();
+                if (before != null && before.getTotalListings() != after.getTotalListings()) {
+                    log.info("Reconciled catalog statistics: {} listings counted, {} in the database",
+                            before.getTotalListings(), after.getTotalListings());
+                }
+            }
+        } catch (DataAccessException e) {
+            log.warn("Reconciling the catalog statistics failed, will retry on the next run", e);
+        }
+    }
+
+    @EventListener
+    public void onBookChanged(BookChangedEvent event) {
+        synchronized (writeLock) {
+            if (changedDuringRebuild != null) {
+                if (event.isFullInvalidation()) {
+                    invalidatedDuringRebuild = true;
+                } else {
+                    changedDuringRebuild.add(event.getBookId());
+                }
+            }
+            StatsCounters current = counters;
+            if (current == null) {
+                return;
+            }
+            if (event.isFullInvalidation()) {
+                drop();
+                return;
+            }
+            long id = event.getBookId();
+            if (event.getChangeType() == ChangeType.DELETED || event.getChangeType() == ChangeType.ARCHIVED) {
+                current.remove(id);
+            } else {
+                try {
+                    apply(current, id);
+                } catch (DataAccessException e) {
+                    log.warn("Could not apply change to book {} to the catalog statistics, they will be rebuilt", id, e);
+                    drop();
+                    return;
+                }
+            }
+            publish(current);
+        }
+    }
+
+    @Override
+    public void bindTo(MeterRegistry registry) {
+        Gauge.builder("stats.counters.bytes", this, statistics -> {
+                    StatsCounters current = statistics.counters;
+                    return current == null ? 0 : current.estimatedBytes();
+                })
+                .description("Approximate heap used by the catalog statistics counters")
+                .baseUnit("bytes")
+                .register(registry);
+    }
+
+    // Caller holds rebuildLock. The table is read without holding writeLock, so writes are not held up.
+    private BookStats rebuild() {
+        synchronized (writeLock) {
+            changedDuringRebuild = new HashSet<>();
+            invalidatedDuringRebuild = false;
+        }
+        try {
+            long start = System.nanoTime();
+            List<BookBrowseRow> rows = bookRepository.findAllBrowseRows();
+            StatsCounters fresh = StatsCounters.of(rows);
+            synchronized (writeLock) {
+                if (invalidatedDuringRebuild) {
+                    // Rows read before the invalidation may be stale; serve them this once, keep nothing
+                    drop();
+                    return fresh.snapshot(LocalDate.now(), days, topAuthors);
+                }
+                for (Long id : changedDuringRebuild) {
+                    apply(fresh, id);
+                }
+                counters = fresh;
+                log.info("Built the catalog statistics for {} listings in {} ms", fresh.size(),
+                        (System.nanoTime() - start) / 1_000_000);
+                return publish(fresh);
+            }
+        } finally {
+            synchronized (writeLock) {
+                changedDuringRebuild = null;
+            }
+        }
+    }
+
+    // Caller holds writeLock
+    private BookStats publish(StatsCounters source) {
+        LocalDate today = LocalDate.now();
+        BookStats snapshot = source.snapshot(today, days, topAuthors);
+        statsDay = today;
+        stats = snapshot;
+        return snapshot;
+    }
+
+    private void apply(StatsCounters target, long id) {
+        Optional<BookBrowseRow> row = bookRepository.findBrowseRowById(id);
+        if (row.isPresent()) {
+            target.put(row.get());
+        } else {
+            target.remove(id);
+        }
+    }
+
+    private void drop() {
+        counters = null;
+        stats = null;
+    }
+}
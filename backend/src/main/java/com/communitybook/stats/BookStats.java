@@ -0,0 +1,58 @@
+package com.communitybook.stats;
+
+import com.communitybook.model.BookType;
+
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+// Catalog statistics for the dashboard and the frontend header, as returned by GET /v1/books/stats.
+// The median sell price is an estimate (see PriceHistogram); counts, including per author, are exact.
+public class BookStats {
+
+    private final long totalListings;
+    private final Map<BookType, Long> listingsByType;
+    // ISO date -> listings created that day, oldest first, ending today
+    private final Map<String, Long> newListingsPerDay;
+    private final BigDecimal averageSellPrice;
+    private final BigDecimal medianSellPrice;
+    private final List<AuthorCount> topAuthors;
+
+    public BookStats(long totalListings, Map<BookType, Long> listingsByType, Map<String, Long> newListingsPerDay,
+                     BigDecimal averageSellPrice, BigDecimal medianSellPrice, List<AuthorCount> topAuthors) {
+        this.totalListings = totalListings;
+        this.listingsByType = listingsByType;
+        this.newListingsPerDay = newListingsPerDay;
+        this.averageSellPrice = averageSellPrice;
+        this.medianSellPrice = medianSellPrice;
+        this.topAuthors = topAuthors;
+    }
+
+    public long getTotalListings() { return totalListings; }
+
+    public Map<BookType, Long> getListingsByType() { return listingsByType; }
+
+    public Map<String, Long> getNewListingsPerDay() { return newListingsPerDay; }
+
+    // null while nothing is for sale
+    public BigDecimal getAverageSellPrice() { return averageSellPrice; }
+
+    public BigDecimal getMedianSellPrice() { return medianSellPrice; }
+
+    public List<AuthorCount> getTopAuthors() { return topAuthors; }
+
+    public static class AuthorCount {
+
+        private final String author;
+        private final long count;
+
+        public AuthorCount(String author, long count) {
+            this.author = author;
+            this.count = count;
+        }
+
+        public String getAuthor() { return author; }
+
+        public long getCount() { return count; }
+    }
+}
@@ -0,0 +1,60 @@
+package com.communitybook.stats;
+
+// Log-bucketed histogram of prices in cents, for quantiles with a bounded relative error.
+//
+// Bucket i holds the prices in (gamma^(i-1), gamma^i], with gamma chosen so that reporting the bucket's
+// midpoint is never more than RELATIVE_ACCURACY off the true value, whatever the price range. Free books
+// get a bucket of their own. Unlike a sample-based sketch, counts can be decremented again, which is what
+// updates and deletes need.
+final class PriceHistogram {
+
+    static final double RELATIVE_ACCURACY = 0.01;
+    private static final double GAMMA = (1 + RELATIVE_ACCURACY) / (1 - RELATIVE_ACCURACY);
+    private static final double LOG_GAMMA = Math.log(GAMMA);
+    // Up to 10 million (in cents: 10^9), about 520 buckets; anything dearer shares the last one
+    private static final int BUCKETS = (int) Math.ceil(Math.log(1e9) / LOG_GAMMA) + 2;
+
+    private final long[] counts = new long[BUCKETS];
+    private long total;
+
+    void add(long cents, long delta) {
+        counts[bucketOf(cents)] += delta;
+        total += delta;
+    }
+
+    long total() {
+        return total;
+    }
+
+    // Approximate median in cents (the lower median for an even count), or -1 when empty
+    long median() {
+        if (total <= 0) {
+            return -1;
+        }
+        long rank = (total - 1) / 2;
+        long seen = 0;
+        for (int bucket = 0; bucket < BUCKETS; bucket++) {
+            seen += counts[bucket];
+            if (seen > rank) {
+                return valueOf(bucket);
+            }
+        }
+        return valueOf(BUCKETS - 1);
+    }
+
+    static int bucketOf(long cents) {
+        if (cents <= 0) {
+            return 0;
+        }
+        int bucket = (int) Math.ceil(Math.log(cents) / LOG_GAMMA) + 1;
+        return Math.min(bucket, BUCKETS - 1);
+    }
+
+    // Midpoint of the bucket in relative terms: at most RELATIVE_ACCURACY away from anything in it
+    private static long valueOf(int bucket) {
+        if (bucket == 0) {
+            return 0;
+        }
+        return Math.round(2 * Math.pow(GAMMA, bucket - 1) / (GAMMA + 1));
+    }
+}
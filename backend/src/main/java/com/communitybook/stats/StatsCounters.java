@@ -0,0 +1,171 @@
+package com.communitybook.stats;
+
+import com.communitybook.model.BookType;
+import com.communitybook.repository.BookBrowseRow;
+import com.communitybook.util.LongIntHashMap;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.time.LocalDate;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+// Running totals behind BookStats, updated one listing at a time.
+//
+// What each listing added (type, day, price, author) is remembered per id in flat arrays, so an update
+// or delete subtracts exactly that contribution before the new one is added. Without it the counters
+// would drift every time a listing changes type or price. Not thread-safe; BookStatistics serializes
+// changes and hands readers immutable snapshots.
+final class StatsCounters {
+
+    private static final BookType[] TYPES = BookType.values();
+    private static final int INITIAL_CAPACITY = 1024;
+    private static final long NO_DAY = Long.MIN_VALUE;
+    private static final long NO_PRICE = -1;
+
+    private final long[] typeCounts = new long[TYPES.length];
+    private final Map<Long, Long> countsByDay = new HashMap<>();
+    private final PriceHistogram prices = new PriceHistogram();
+    private long priceSumCents;
+    private final AuthorCounts authors = new AuthorCounts();
+
+    private final LongIntHashMap slotsById;
+    private byte[] contributedType;
+    private long[] contributedDay;
+    private long[] contributedCents;
+    private long[] contributedAuthor;
+    private int used;
+    private int[] freeSlots = new int[16];
+    private int freeCount;
+
+    StatsCounters(int expectedSize) {
+        int capacity = Math.max(INITIAL_CAPACITY, expectedSize);
+        slotsById = new LongIntHashMap(capacity);
+        contributedType = new byte[capacity];
+        contributedDay = new long[capacity];
+        contributedCents = new long[capacity];
+        contributedAuthor = new long[capacity];
+    }
+
+    // Counters for a full set of rows
+    static StatsCounters of(List<? extends BookBrowseRow> rows) {
+        StatsCounters counters = new StatsCounters(rows.size() + rows.size() / 4);
+        for (BookBrowseRow row : rows) {
+            counters.put(row);
+        }
+        return counters;
+    }
+
+    // Adds a listing, replacing what it contributed before if it is already counted
+    void put(BookBrowseRow row) {
+        remove(row.getId());
+        int slot = freeCount > 0 ? freeSlots[--freeCount] : nextSlot();
+        contributedType[slot] = (byte) row.getType().ordinal();
+        contributedDay[slot] = row.getCreatedAt() == null ? NO_DAY : row.getCreatedAt().toLocalDate().toEpochDay();
+        contributedCents[slot] = row.getType() == BookType.SELL && row.getPrice() != null ? cents(row.getPrice()) : NO_PRICE;
+        contributedAuthor[slot] = authorKey(row.getAuthor());
+        slotsById.put(row.getId(), slot);
+        apply(slot, 1, row.getAuthor());
+    }
+
+    void remove(long id) {
+        int slot = slotsById.remove(id);
+        if (slot == LongIntHashMap.MISSING) {
+            return;
+        }
+        apply(slot, -1, null);
+        if (freeCount == freeSlots.length) {
+            freeSlots = Arrays.copyOf(freeSlots, freeCount * 2);
+        }
+        freeSlots[freeCount++] = slot;
+    }
+
+    int size() {
+        return slotsById.size();
+    }
+
+    long estimatedBytes() {
+        return contributedType.length * 25L + slotsById.estimatedBytes() + authors.estimatedBytes()
+                + countsByDay.size() * 64L;
+    }
+
+    BookStats snapshot(LocalDate today, int days, int topAuthors) {
+        Map<BookType, Long> byType = new EnumMap<>(BookType.class);
+        long total = 0;
+        for (BookType type : TYPES) {
+            byType.put(type, typeCounts[type.ordinal()]);
+            total += typeCounts[type.ordinal()];
+        }
+        Map<String, Long> perDay = new LinkedHashMap<>();
+        for (LocalDate day = today.minusDays(days - 1); !day.isAfter(today); day = day.plusDays(1)) {
+            perDay.put(day.toString(), countsByDay.getOrDefault(day.toEpochDay(), 0L));
+        }
+        long priced = prices.total();
+        BigDecimal average = priced == 0 ? null
+                : BigDecimal.valueOf(priceSumCents).divide(BigDecimal.valueOf(priced), 0, RoundingMode.HALF_UP).movePointLeft(2);
+        BigDecimal median = priced == 0 ? null : BigDecimal.valueOf(prices.median()).movePointLeft(2);
+        return new BookStats(total, Collections.unmodifiableMap(byType), Collections.unmodifiableMap(perDay),
+                average, median, Collections.unmodifiableList(authors.top(topAuthors)));
+    }
+
+    private void apply(int slot, int delta, String authorName) {
+        typeCounts[contributedType[slot]] += delta;
+        long day = contributedDay[slot];
+        if (day != NO_DAY) {
+            long count = countsByDay.getOrDefault(day, 0L) + delta;
+            if (count == 0) {
+                countsByDay.remove(day);
+            } else {
+                countsByDay.put(day, count);
+            }
+        }
+        long cents = contributedCents[slot];
+        if (cents != NO_PRICE) {
+            prices.add(cents, delta);
+            priceSumCents += delta * cents;
+        }
+        authors.add(contributedAuthor[slot], authorName, delta);
+    }
+
+    private int nextSlot() {
+        if (used == contributedType.length) {
+            int capacity = used * 2;
+            contributedType = Arrays.copyOf(contributedType, capacity);
+            contributedDay = Arrays.copyOf(contributedDay, capacity);
+            contributedCents = Arrays.copyOf(contributedCents, capacity);
+            contributedAuthor = Arrays.copyOf(contributedAuthor, capacity);
+        }
+        return used++;
+    }
+
+    // Same author however it is capitalized or padded, like the browse filter
+    static long authorKey(String author) {
+        String normalized = author == null ? "" : author.trim().toLowerCase(Locale.ROOT);
+        long hash = 0xcbf29ce484222325L;
+        for (int i = 0; i < normalized.length(); i++) {
+            hash ^= normalized.charAt(i);
+            hash *= 0x100000001b3L;
+        }
+        return mix(hash);
+    }
+
+    // Murmur3 finalizer
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xFF51AFD7ED558CCDL;
+        value ^= value >>> 33;
+        value *= 0xC4CEB9FE1A85EC53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    private static long cents(BigDecimal price) {
+        return Math.max(0, price.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValue());
+    }
+}
@@ -0,0 +1,49 @@
+package com.communitybook.timing;
+
+import com.communitybook.timing.RequestTimings.Phase;
+import org.hibernate.SessionEventListener;
+
+// Registered through hibernate.session.events.auto; Hibernate creates one per session and calls it
+// around connection acquisition and statement execution.
+public class HibernateTimingListener implements SessionEventListener {
+
+    @Override
+    public void jdbcConnectionAcquisitionStart() {
+        RequestTimings.current().begin(Phase.POOL);
+    }
+
+    @Override
+    public void jdbcConnectionAcquisitionEnd() {
+        RequestTimings.current().end(Phase.POOL);
+    }
+
+    @Override
+    public void jdbcPrepareStatementStart() {
+        RequestTimings.current().begin(Phase.SQL);
+    }
+
+    @Override
+    public void jdbcPrepareStatementEnd() {
+        RequestTimings.current().end(Phase.SQL);
+    }
+
+    @Override
+    public void jdbcExecuteStatementStart() {
+        RequestTimings.current().begin(Phase.SQL);
+    }
+
+    @Override
+    public void jdbcExecuteStatementEnd() {
+        RequestTimings.current().end(Phase.SQL);
+    }
+
+    @Override
+    public void jdbcExecuteBatchStart() {
+        RequestTimings.current().begin(Phase.SQL);
+    }
+
+    @Override
+    public void jdbcExecuteBatchEnd() {
+        RequestTimings.current().end(Phase.SQL);
+    }
+}
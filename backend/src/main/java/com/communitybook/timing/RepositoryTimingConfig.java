@@ -0,0 +1,39 @@
+package com.communitybook.timing;
+
+import com.communitybook.timing.RequestTimings.Phase;
+import org.aopalliance.intercept.MethodInterceptor;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.repository.core.support.RepositoryFactoryBeanSupport;
+
+// Times every Spring Data repository call for the Server-Timing breakdown. The repository phase
+// includes pool wait and SQL; what remains is Hibernate turning rows into entities.
+@Configuration
+public class RepositoryTimingConfig {
+
+    private static final MethodInterceptor REPOSITORY_TIMING = invocation -> {
+        RequestTimings timings = RequestTimings.current();
+        timings.begin(Phase.REPOSITORY);
+        try {
+            return invocation.proceed();
+        } finally {
+            timings.end(Phase.REPOSITORY);
+        }
+    };
+
+    // Static so it is registered before the repository factory beans it customizes are created
+    @Bean
+    public static BeanPostProcessor repositoryTimingPostProcessor() {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessBeforeInitialization(Object bean, String beanName) {
+                if (bean instanceof RepositoryFactoryBeanSupport<?, ?, ?> factoryBean) {
+                    factoryBean.addRepositoryFactoryCustomizer(factory -> factory.addRepositoryProxyPostProcessor(
+                            (proxyFactory, repositoryInformation) -> proxyFactory.addAdvice(REPOSITORY_TIMING)));
+                }
+                return bean;
+            }
+        };
+    }
+}
@@ -0,0 +1,151 @@
+package com.communitybook.timing;
+
+// Per-request phase timings, kept in a reusable per-thread object so recording a phase never allocates.
+//
+// ServerTimingFilter activates it at the start of a request and resets it at the end. The hooks that
+// record phases (Hibernate session events, the repository interceptor, ...) call begin/end on
+// current(); outside of an active request, e.g. on background threads, those calls do nothing.
+public final class RequestTimings {
+
+    public enum Phase {
+        // Waiting for a pooled JDBC connection
+        POOL("pool"),
+        // Preparing and executing SQL statements
+        SQL("sql"),
+        // Time inside repository methods, which includes POOL and SQL; the rest is Hibernate hydration
+        REPOSITORY("repo"),
+        // Inside the container's output stream: copying into its buffer and, whenever the buffer is full
+        // or flushed, sending it to the socket
+        FLUSH("flush");
+
+        private final String metricName;
+
+        Phase(String metricName) {
+            this.metricName = metricName;
+        }
+
+        public String getMetricName() {
+            return metricName;
+        }
+    }
+
+    static final Phase[] PHASES = Phase.values();
+
+    private static final ThreadLocal<RequestTimings> CURRENT = ThreadLocal.withInitial(RequestTimings::new);
+
+    private final long[] totals = new long[PHASES.length];
+    private final long[] startedAt = new long[PHASES.length];
+    private final int[] depth = new int[PHASES.length];
+    private final StringBuilder header = new StringBuilder(128);
+    private boolean active;
+    private long requestStart;
+    private long handlerEnd;
+    private long serializeEnd;
+    private long flushedDuringSerialize;
+
+    private RequestTimings() {
+    }
+
+    public static RequestTimings current() {
+        return CURRENT.get();
+    }
+
+    public void begin(Phase phase) {
+        if (active && depth[phase.ordinal()]++ == 0) {
+            startedAt[phase.ordinal()] = System.nanoTime();
+        }
+    }
+
+    public void end(Phase phase) {
+        int i = phase.ordinal();
+        // Only the outermost begin/end pair counts, so nested calls are not double counted
+        if (active && depth[i] > 0 && --depth[i] == 0) {
+            totals[i] += System.nanoTime() - startedAt[i];
+        }
+    }
+
+    public boolean isActive() {
+        return active;
+    }
+
+    void start() {
+        for (int i = 0; i < totals.length; i++) {
+            totals[i] = 0;
+            depth[i] = 0;
+        }
+        handlerEnd = 0;
+        serializeEnd = 0;
+        flushedDuringSerialize = 0;
+        requestStart = System.nanoTime();
+        active = true;
+    }
+
+    void stop() {
+        active = false;
+    }
+
+    // Called when the controller has produced its result and the response body is about to be written
+    void markHandlerEnd() {
+        if (active && handlerEnd == 0) {
+            handlerEnd = System.nanoTime();
+        }
+    }
+
+    // Called when the body has been handed to the container in full, before its buffer is flushed
+    void markSerializeEnd() {
+        if (active && handlerEnd != 0 && serializeEnd == 0) {
+            serializeEnd = System.nanoTime();
+            flushedDuringSerialize = total(Phase.FLUSH);
+        }
+    }
+
+    long total(Phase phase) {
+        return totals[phase.ordinal()];
+    }
+
+    // Repository time not spent waiting for a connection or running SQL: mostly building entities
+    long hydrate() {
+        return Math.max(0, total(Phase.REPOSITORY) - total(Phase.POOL) - total(Phase.SQL));
+    }
+
+    // Everything up to the point the response body started being written (controller + services + database)
+    long handler(long now) {
+        return (handlerEnd == 0 ? now : handlerEnd) - requestStart;
+    }
+
+    // Turning the body into bytes (the HttpMessageConverter write), without the time the container spent
+    // sending full buffers to the socket in the meantime; those are counted under FLUSH
+    long serialize() {
+        return serializeEnd == 0 ? 0 : Math.max(0, serializeEnd - handlerEnd - flushedDuringSerialize);
+    }
+
+    // Builds the Server-Timing header value, e.g. "pool;dur=0.02, sql;dur=1.31, hydrate;dur=0.40, app;dur=2.10".
+    // The serialize phase is only known once the body has been written, so it is included only when requested.
+    // The final flush to the socket happens after the headers are sent and never appears here.
+    String formatHeader(long now, boolean includeSerialize) {
+        header.setLength(0);
+        append("pool", total(Phase.POOL));
+        append("sql", total(Phase.SQL));
+        append("hydrate", hydrate());
+        append("app", handler(now));
+        if (includeSerialize) {
+            append("serialize", serialize());
+            append("total", now - requestStart);
+        }
+        return header.toString();
+    }
+
+    private void append(String name, long nanos) {
+        if (header.length() > 0) {
+            header.append(", ");
+        }
+        // Milliseconds with two decimals, without going through String.format
+        long hundredths = nanos / 10_000;
+        header.append(name).append(";dur=").append(hundredths / 100).append('.');
+        long fraction = hundredths % 100;
+        if (fraction < 10) {
+            header.append('0');
+        }
+        header.append(fraction);
+    }
+}
@@ -0,0 +1,40 @@
+package com.communitybook.timing;
+
+import org.springframework.core.MethodParameter;
+import org.springframework.http.MediaType;
+import org.springframework.http.converter.HttpMessageConverter;
+import org.springframework.http.server.ServerHttpRequest;
+import org.springframework.http.server.ServerHttpResponse;
+import org.springframework.web.bind.annotation.ControllerAdvice;
+import org.springframework.web.servlet.mvc.method.annotation.ResponseBodyAdvice;
+
+// Marks the end of the handler phase and adds the Server-Timing header while headers can still be set,
+// right before the response body is serialized and written
+@ControllerAdvice
+public class ServerTimingAdvice implements ResponseBodyAdvice<Object> {
+
+    private final ServerTimingFilter serverTimingFilter;
+
+    public ServerTimingAdvice(ServerTimingFilter serverTimingFilter) {
+        this.serverTimingFilter = serverTimingFilter;
+    }
+
+    @Override
+    public boolean supports(MethodParameter returnType, Class<? extends HttpMessageConverter<?>> converterType) {
+        return true;
+    }
+
+    @Override
+    public Object beforeBodyWrite(Object body, MethodParameter returnType, MediaType selectedContentType,
+                                  Class<? extends HttpMessageConverter<?>> selectedConverterType,
+                                  ServerHttpRequest request, ServerHttpResponse response) {
+        RequestTimings timings = RequestTimings.current();
+        if (timings.isActive()) {
+            timings.markHandlerEnd();
+            if (serverTimingFilter.isExposeHeader()) {
+                response.getHeaders().set(ServerTimingFilter.HEADER, timings.formatHeader(System.nanoTime(), false));
+            }
+        }
+        return body;
+    }
+}
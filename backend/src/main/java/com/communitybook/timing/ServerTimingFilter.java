@@ -0,0 +1,208 @@
+package com.communitybook.timing;
+
+import com.communitybook.timing.RequestTimings.Phase;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import jakarta.servlet.FilterChain;
+import jakarta.servlet.ServletException;
+import jakarta.servlet.ServletOutputStream;
+import jakarta.servlet.WriteListener;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.HttpServletResponseWrapper;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.Ordered;
+import org.springframework.core.annotation.Order;
+import org.springframework.stereotype.Component;
+import org.springframework.web.filter.OncePerRequestFilter;
+import org.springframework.web.servlet.HandlerMapping;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+// Breaks every API request down into phases (pool wait, SQL, hydration, app, serialize, flush) and
+//  - reports them in a standard Server-Timing response header, visible in the browser's network tab
+//  - records them in per-endpoint histograms (http.server.phase, tagged by endpoint and phase)
+//
+// The header is added just before the body is written (see ServerTimingAdvice), because once the body
+// starts streaming the headers are gone. Flushes requested while the body is written (message converters
+// flush when they are done) are held back until the chain returns, so a body that fits in the container's
+// response buffer is still uncommitted then: its header is replaced with one that also has the serialize
+// and total phases, and only then is the buffer flushed. Larger bodies commit the headers mid-write and
+// report serialize and flush in the histograms only; the final flush always comes after the headers.
+@Component
+@Order(Ordered.HIGHEST_PRECEDENCE + 10)
+public class ServerTimingFilter extends OncePerRequestFilter {
+
+    public static final String HEADER = "Server-Timing";
+
+    private static final String[] PHASE_TAGS = {"pool", "sql", "hydrate", "app", "serialize", "flush"};
+
+    private final boolean enabled;
+    private final boolean exposeHeader;
+    private final MeterRegistry meterRegistry;
+    private final Map<String, Timer[]> timersByEndpoint = new ConcurrentHashMap<>();
+
+    public ServerTimingFilter(@Value("${app.server-timing.enabled:true}") boolean enabled,
+                              @Value("${app.server-timing.expose-header:true}") boolean exposeHeader,
+                              ObjectProvider<MeterRegistry> meterRegistry) {
+        this.enabled = enabled;
+        this.exposeHeader = exposeHeader;
+        this.meterRegistry = meterRegistry.getIfAvailable();
+    }
+
+    boolean isExposeHeader() {
+        return exposeHeader;
+    }
+
+    @Override
+    protected boolean shouldNotFilter(HttpServletRequest request) {
+        return !enabled || !request.getRequestURI().startsWith(request.getContextPath() + "/api/");
+    }
+
+    @Override
+    protected void doFilterInternal(HttpServletRequest request, HttpServletResponse response, FilterChain chain)
+            throws ServletException, IOException {
+        RequestTimings timings = RequestTimings.current();
+        timings.start();
+        TimedResponse timedResponse = new TimedResponse(response, timings);
+        try {
+            chain.doFilter(request, timedResponse);
+            timings.markSerializeEnd();
+            if (exposeHeader && !response.isCommitted()) {
+                response.setHeader(HEADER, timings.formatHeader(System.nanoTime(), true));
+            }
+            // An async request is still being written by another thread
+            if (!request.isAsyncStarted()) {
+                timedResponse.flushHeldBack();
+            }
+        } finally {
+            record(request, timings, System.nanoTime());
+            timings.stop();
+        }
+    }
+
+    private void record(HttpServletRequest request, RequestTimings timings, long now) {
+        Object pattern = request.getAttribute(HandlerMapping.BEST_MATCHING_PATTERN_ATTRIBUTE);
+        if (meterRegistry == null || pattern == null) {
+            return;
+        }
+        Timer[] timers = timersByEndpoint.computeIfAbsent(request.getMethod() + " " + pattern, this::createTimers);
+        timers[0].record(timings.total(Phase.POOL), TimeUnit.NANOSECONDS);
+        timers[1].record(timings.total(Phase.SQL), TimeUnit.NANOSECONDS);
+        timers[2].record(timings.hydrate(), TimeUnit.NANOSECONDS);
+        timers[3].record(timings.handler(now), TimeUnit.NANOSECONDS);
+        timers[4].record(timings.serialize(), TimeUnit.NANOSECONDS);
+        timers[5].record(timings.total(Phase.FLUSH), TimeUnit.NANOSECONDS);
+    }
+
+    private Timer[] createTimers(String endpoint) {
+        Timer[] timers = new Timer[PHASE_TAGS.length];
+        for (int i = 0; i < PHASE_TAGS.length; i++) {
+            timers[i] = Timer.builder("http.server.phase")
+                    .description("Time spent in each phase of an API request")
+                    .tag("endpoint", endpoint)
+                    .tag("phase", PHASE_TAGS[i])
+                    .publishPercentileHistogram()
+                    .register(meterRegistry);
+        }
+        return timers;
+    }
+
+    // Times everything the body writer spends inside the container's output stream as FLUSH, and holds
+    // back flushes until the filter has had a chance to set the final header. Writers (only used for
+    // error pages here) are not wrapped, so their time counts as serialization.
+    static final class TimedResponse extends HttpServletResponseWrapper {
+
+        private final RequestTimings timings;
+        private TimedOutputStream outputStream;
+        private boolean holdFlush = true;
+
+        TimedResponse(HttpServletResponse response, RequestTimings timings) {
+            super(response);
+            this.timings = timings;
+        }
+
+        @Override
+        public ServletOutputStream getOutputStream() throws IOException {
+            if (outputStream == null) {
+                outputStream = new TimedOutputStream(super.getOutputStream());
+            }
+            return outputStream;
+        }
+
+        @Override
+        public void flushBuffer() throws IOException {
+            if (!holdFlush) {
+                super.flushBuffer();
+            }
+        }
+
+        void flushHeldBack() throws IOException {
+            holdFlush = false;
+            timings.begin(Phase.FLUSH);
+            try {
+                super.flushBuffer();
+            } finally {
+                timings.end(Phase.FLUSH);
+            }
+        }
+
+        private final class TimedOutputStream extends ServletOutputStream {
+
+            private final ServletOutputStream delegate;
+
+            TimedOutputStream(ServletOutputStream delegate) {
+                this.delegate = delegate;
+            }
+
+            @Override
+            public void write(int b) throws IOException {
+                timings.begin(Phase.FLUSH);
+                try {
+                    delegate.write(b);
+                } finally {
+                    timings.end(Phase.FLUSH);
+                }
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                timings.begin(Phase.FLUSH);
+                try {
+                    delegate.write(b, off, len);
+                } finally {
+                    timings.end(Phase.FLUSH);
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                if (!holdFlush) {
+                    delegate.flush();
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                // Closing commits the response; while flushes are held back the container closes it at the end
+                if (!holdFlush) {
+                    delegate.close();
+                }
+            }
+
+            @Override
+            public boolean isReady() {
+                return delegate.isReady();
+            }
+
+            @Override
+            public void setWriteListener(WriteListener writeListener) {
+                delegate.setWriteListener(writeListener);
+            }
+        }
+    }
+}
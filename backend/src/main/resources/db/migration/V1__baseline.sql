@@ -0,0 +1,24 @@
+-- Schema as it was before migrations were introduced (database/schema.sql).
+-- Databases set up with that script are baselined at this version and start at V2.
+
+CREATE TABLE IF NOT EXISTS books (
+    id BIGSERIAL PRIMARY KEY,
+    title VARCHAR(255) NOT NULL,
+    author VARCHAR(255) NOT NULL,
+    photo_url VARCHAR(500) NOT NULL,
+    photo_data BYTEA,
+    price DECIMAL(10,2),
+    type VARCHAR(20) NOT NULL CHECK (type IN ('SELL', 'GIVEAWAY')),
+    description TEXT,
+    owner_name VARCHAR(255) NOT NULL,
+    contact_method VARCHAR(10) NOT NULL CHECK (contact_method IN ('EMAIL', 'PHONE')),
+    contact_info VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
+    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+
+CREATE INDEX IF NOT EXISTS idx_books_type ON books(type);
+CREATE INDEX IF NOT EXISTS idx_books_author ON books(author);
+CREATE INDEX IF NOT EXISTS idx_books_title ON books(title);
+CREATE INDEX IF NOT EXISTS idx_books_owner_name ON books(owner_name);
+CREATE INDEX IF NOT EXISTS idx_books_created_at ON books(created_at);
@@ -0,0 +1,31 @@
+-- Tables and columns added on top of the baseline: the photo hash of duplicate detection, the archive of
+-- aged listings and the cluster-wide catalog version. Some databases got parts of these from an earlier
+-- database/schema.sql, so every statement is safe to run on a schema that already has them.
+
+ALTER TABLE books ADD COLUMN IF NOT EXISTS photo_hash BIGINT;
+
+CREATE TABLE IF NOT EXISTS books_archive (
+    id BIGINT PRIMARY KEY,
+    title VARCHAR(255) NOT NULL,
+    author VARCHAR(255) NOT NULL,
+    photo_url VARCHAR(500) NOT NULL,
+    photo_data BYTEA,
+    price DECIMAL(10,2),
+    type VARCHAR(20) NOT NULL,
+    description TEXT,
+    owner_name VARCHAR(255) NOT NULL,
+    contact_method VARCHAR(10) NOT NULL,
+    contact_info VARCHAR(255) NOT NULL,
+    created_at TIMESTAMP,
+    updated_at TIMESTAMP,
+    archived_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
+);
+ALTER TABLE books_archive ADD COLUMN IF NOT EXISTS photo_hash BIGINT;
+
+CREATE INDEX IF NOT EXISTS idx_books_archive_created_at ON books_archive(created_at);
+CREATE INDEX IF NOT EXISTS idx_books_archive_type ON books_archive(type);
+
+CREATE SEQUENCE IF NOT EXISTS catalog_version_seq;
+
+-- Used by the trigram indexes of V3, which runs outside a transaction and so cannot create it itself
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
@@ -0,0 +1,23 @@
+-- Indexes for search (see FullTextBookSearch).
+--
+-- Every statement is CONCURRENTLY, so Flyway runs this migration outside a transaction and the books
+-- table stays writable while the indexes are built; startup still waits for them. If a build fails,
+-- Postgres leaves an INVALID index behind that IF NOT EXISTS would keep: drop it, run flyway repair
+-- and start again.
+
+-- Trigram indexes serve LOWER(title/author) LIKE '%term%', which the B-tree indexes cannot
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_books_title_trgm ON books USING gin (LOWER(title) gin_trgm_ops);
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_books_author_trgm ON books USING gin (LOWER(author) gin_trgm_ops);
+
+-- Full-text index over the document title and author (weight A) and description (weight B). An expression
+-- index rather than a stored generated column, which would rewrite the whole table under an exclusive lock.
+-- BookRepository.SEARCH_DOCUMENT must stay identical to the expression, or the index is not used.
+CREATE INDEX CONCURRENTLY IF NOT EXISTS idx_books_search_document ON books USING gin ((
+    setweight(to_tsvector('english', coalesce(title, '')), 'A') ||
+    setweight(to_tsvector('english', coalesce(author, '')), 'A') ||
+    setweight(to_tsvector('english', coalesce(description, '')), 'B')
+));
+
+-- Nothing looks up exact titles or authors, so the B-tree indexes only cost writes
+DROP INDEX CONCURRENTLY IF EXISTS idx_books_title;
+DROP INDEX CONCURRENTLY IF EXISTS idx_books_author;
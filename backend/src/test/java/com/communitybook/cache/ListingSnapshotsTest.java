@@ -0,0 +1,165 @@
+package com.communitybook.cache;
+
+import com.communitybook.event.BookChangedEvent;
+import com.communitybook.event.BookChangedEvent.ChangeType;
+import com.communitybook.model.Book;
+import com.communitybook.resilience.ReadDegradation;
+import com.communitybook.service.BookService;
+import com.communitybook.service.CatalogVersion;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@DisplayName("ListingSnapshots Unit Tests - Stale While Revalidate")
+class ListingSnapshotsTest {
+
+    private final BookService bookService = mock(BookService.class);
+    private final ReadDegradation readDegradation = mock(ReadDegradation.class);
+    private final CatalogVersion catalogVersion = new CatalogVersion();
+    private final ListingSnapshots listingSnapshots = new ListingSnapshots();
+
+    // Lets a test hold the rebuild thread inside the database call
+    private final CountDownLatch loading = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(listingSnapshots, "bookService", bookService);
+        ReflectionTestUtils.setField(listingSnapshots, "objectMapper", new ObjectMapper().findAndRegisterModules());
+        ReflectionTestUtils.setField(listingSnapshots, "catalogVersion", catalogVersion);
+        ReflectionTestUtils.setField(listingSnapshots, "readDegradation", readDegradation);
+        when(readDegradation.call(anyString(), any())).thenAnswer(invocation ->
+                invocation.<Supplier<?>>getArgument(1).get());
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        listingSnapshots.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should serve the previous snapshot while a rebuild is running")
+    void allBooks_WhileRebuilding_ShouldServePreviousSnapshot() throws Exception {
+        // Given
+        when(bookService.getAllBooks())
+                .thenReturn(List.of(book("First")))
+                .thenAnswer(invocation -> blockThenReturn(book("First"), book("Second")));
+        ListingSnapshots.Snapshot first = listingSnapshots.allBooks();
+
+        // When
+        change();
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        ListingSnapshots.Snapshot whileRebuilding = listingSnapshots.allBooks();
+        release.countDown();
+
+        // Then
+        assertThat(whileRebuilding.getETag()).isEqualTo(first.getETag());
+        assertThat(whileRebuilding.isStale()).isFalse();
+        awaitVersion(1);
+        assertThat(new String(listingSnapshots.allBooks().getBody())).contains("Second");
+    }
+
+    @Test
+    @DisplayName("Should collapse changes during a rebuild into one more rebuild")
+    void onBookChanged_ManyChanges_ShouldQueueOneRebuild() throws Exception {
+        // Given
+        when(bookService.getAllBooks())
+                .thenReturn(List.of(book("First")))
+                .thenAnswer(invocation -> blockThenReturn(book("First")))
+                .thenReturn(List.of(book("First"), book("Second")));
+        listingSnapshots.allBooks();
+
+        // When
+        change();
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        for (int i = 0; i < 5; i++) {
+            change();
+        }
+        release.countDown();
+
+        // Then
+        awaitVersion(6);
+        verify(bookService, times(3)).getAllBooks();
+    }
+
+    @Test
+    @DisplayName("Should let concurrent first requests share one build")
+    void allBooks_ConcurrentFirstRequests_ShouldQueryOnce() throws Exception {
+        // Given
+        when(bookService.getAllBooks()).thenAnswer(invocation -> blockThenReturn(book("First")));
+
+        // When
+        CompletableFuture<ListingSnapshots.Snapshot> first = CompletableFuture.supplyAsync(listingSnapshots::allBooks);
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        CompletableFuture<ListingSnapshots.Snapshot> second = CompletableFuture.supplyAsync(listingSnapshots::allBooks);
+        Thread.sleep(50);
+        release.countDown();
+
+        // Then
+        assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(first.get(5, TimeUnit.SECONDS));
+        verify(bookService, times(1)).getAllBooks();
+    }
+
+    @Test
+    @DisplayName("Should mark the previous snapshot as stale when the rebuild fails")
+    void allBooks_WhenRebuildFails_ShouldServeStaleSnapshot() throws Exception {
+        // Given
+        when(bookService.getAllBooks())
+                .thenReturn(List.of(book("First")))
+                .thenThrow(new DataAccessResourceFailureException("Connection is not available"));
+        listingSnapshots.allBooks();
+
+        // When
+        change();
+
+        // Then
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!listingSnapshots.allBooks().isStale() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        ListingSnapshots.Snapshot stale = listingSnapshots.allBooks();
+        assertThat(stale.isStale()).isTrue();
+        assertThat(new String(stale.getBody())).contains("First");
+        verify(readDegradation, atLeastOnce()).recordStaleResponse("getAllBooks");
+    }
+
+    private void change() {
+        listingSnapshots.onBookChanged(new BookChangedEvent(1L, ChangeType.UPDATED, catalogVersion.increment()));
+    }
+
+    private List<Book> blockThenReturn(Book... books) throws InterruptedException {
+        loading.countDown();
+        release.await(5, TimeUnit.SECONDS);
+        return List.of(books);
+    }
+
+    private void awaitVersion(long version) throws InterruptedException {
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (listingSnapshots.allBooks().getVersion() < version && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(listingSnapshots.allBooks().getVersion()).isEqualTo(version);
+    }
+
+    private static Book book(String title) {
+        Book book = new Book();
+        book.setTitle(title);
+        return book;
+    }
+}
@@ -0,0 +1,145 @@
+package com.communitybook.cache;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.MediaType;
+import org.springframework.util.unit.DataSize;
+
+import java.io.InputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("PhotoCache Unit Tests")
+class PhotoCacheTest {
+
+    // 64 KB of 1 KB blocks, so a single entry may use up to 16 KB
+    private final PhotoCache photoCache = new PhotoCache(true, DataSize.ofKilobytes(64), DataSize.ofKilobytes(1));
+
+    private static byte[] image(int size, int seed) {
+        byte[] data = new byte[size];
+        for (int i = 0; i < size; i++) {
+            data[i] = (byte) (i * 31 + seed);
+        }
+        return data;
+    }
+
+    private static byte[] readAll(PhotoCache.CachedPhoto photo) throws Exception {
+        try (InputStream in = photo.getInputStream()) {
+            return in.readAllBytes();
+        }
+    }
+
+    private void load(long id, byte[] data) {
+        photoCache.get(id);
+        photoCache.put(id, data, MediaType.IMAGE_JPEG, photoCache.invalidationStamp());
+    }
+
+    @Test
+    @DisplayName("Should return the same bytes across block boundaries")
+    void get_AfterPut_ShouldReturnSameBytes() throws Exception {
+        // Given
+        byte[] data = image(5000, 7);
+        load(1L, data);
+
+        // When
+        PhotoCache.CachedPhoto photo = photoCache.get(1L);
+
+        // Then
+        assertThat(photo).isNotNull();
+        assertThat(photo.contentLength()).isEqualTo(5000);
+        assertThat(photo.getContentType()).isEqualTo(MediaType.IMAGE_JPEG);
+        assertThat(readAll(photo)).isEqualTo(data);
+        assertThat(photoCache.getResidentBytes()).isEqualTo(5000);
+        photo.release();
+    }
+
+    @Test
+    @DisplayName("Should stay within its byte budget and keep popular photos when scanned")
+    void put_WhenFull_ShouldNotLetOneOffRequestsEvictPopularPhotos() throws Exception {
+        // Given - four popular 15 KB photos fill the cache
+        for (long id = 1; id <= 4; id++) {
+            load(id, image(15 * 1024, (int) id));
+            for (int i = 0; i < 5; i++) {
+                photoCache.get(id).release();
+            }
+        }
+
+        // When - a crawler requests many other photos once each
+        for (long id = 100; id < 200; id++) {
+            load(id, image(15 * 1024, (int) id));
+        }
+
+        // Then
+        assertThat(photoCache.getResidentBytes()).isLessThanOrEqualTo(64 * 1024);
+        for (long id = 1; id <= 4; id++) {
+            PhotoCache.CachedPhoto photo = photoCache.get(id);
+            assertThat(photo).isNotNull();
+            assertThat(readAll(photo)).isEqualTo(image(15 * 1024, (int) id));
+            photo.release();
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep serving a pinned photo after it is invalidated")
+    void invalidate_WhilePinned_ShouldDeferReuseOfBlocks() throws Exception {
+        // Given
+        byte[] data = image(8 * 1024, 3);
+        load(1L, data);
+        PhotoCache.CachedPhoto pinned = photoCache.get(1L);
+
+        // When - invalidated and the space is immediately wanted by other photos
+        photoCache.invalidate(1L);
+        for (long id = 2; id <= 10; id++) {
+            load(id, image(8 * 1024, 99));
+        }
+
+        // Then
+        assertThat(photoCache.get(1L)).isNull();
+        assertThat(readAll(pinned)).isEqualTo(data);
+        pinned.release();
+    }
+
+    @Test
+    @DisplayName("Should skip photos that are being streamed when making room")
+    void put_WhenFull_ShouldNotEvictPinnedPhotos() throws Exception {
+        // Given - the cache is full, and the least recently used photo is still being streamed
+        for (long id = 1; id <= 4; id++) {
+            load(id, image(15 * 1024, (int) id));
+        }
+        PhotoCache.CachedPhoto pinned = photoCache.get(1L);
+        for (long id = 2; id <= 4; id++) {
+            photoCache.get(id).release();
+        }
+
+        // When - a popular photo needs the room of one entry
+        for (int i = 0; i < 5; i++) {
+            photoCache.get(5L);
+        }
+        photoCache.put(5L, image(15 * 1024, 5), MediaType.IMAGE_JPEG, photoCache.invalidationStamp());
+
+        // Then - the next unpinned photo made room instead
+        assertThat(photoCache.get(2L)).isNull();
+        PhotoCache.CachedPhoto stillCached = photoCache.get(1L);
+        assertThat(stillCached).isNotNull();
+        stillCached.release();
+        PhotoCache.CachedPhoto admitted = photoCache.get(5L);
+        assertThat(admitted).isNotNull();
+        assertThat(readAll(admitted)).isEqualTo(image(15 * 1024, 5));
+        admitted.release();
+        pinned.release();
+    }
+
+    @Test
+    @DisplayName("Should not cache a photo that was invalidated while it was being loaded")
+    void put_WithStaleStamp_ShouldBeIgnored() {
+        // Given
+        long stamp = photoCache.invalidationStamp();
+        photoCache.invalidate(1L);
+
+        // When
+        photoCache.put(1L, image(100, 1), MediaType.IMAGE_PNG, stamp);
+
+        // Then
+        assertThat(photoCache.get(1L)).isNull();
+    }
+}
@@ -0,0 +1,133 @@
+package com.communitybook.catalog;
+
+import com.communitybook.model.BookType;
+import com.communitybook.repository.BookBrowseRow;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("CatalogColumns Unit Tests")
+class CatalogColumnsTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 5, 1, 12, 0);
+
+    private final CatalogColumns columns = CatalogColumns.of(List.of(
+            row(1, "Tolkien", "12.00", BookType.SELL, 0),
+            row(2, "Austen", null, BookType.GIVEAWAY, 1),
+            row(3, "tolkien ", "5.50", BookType.SELL, 2),
+            row(4, "Orwell", "8.00", BookType.SELL, 3)));
+
+    @Test
+    @DisplayName("Should sort by date and price, with and without a type filter")
+    void shouldSortAndFilterByType() {
+        // When / Then
+        assertIds(columns.query(CatalogColumns.ANY, CatalogColumns.ANY, BrowseSort.NEWEST, 0, 10), 4, 3, 2, 1);
+        assertIds(columns.query(CatalogColumns.ANY, CatalogColumns.ANY, BrowseSort.OLDEST, 0, 10), 1, 2, 3, 4);
+        assertIds(columns.query(CatalogColumns.ANY, CatalogColumns.ANY, BrowseSort.PRICE_ASC, 0, 10), 2, 3, 4, 1);
+        assertIds(columns.query(BookType.SELL.ordinal(), CatalogColumns.ANY, BrowseSort.PRICE_DESC, 0, 10), 1, 4, 3);
+    }
+
+    @Test
+    @DisplayName("Should paginate and match authors case-insensitively")
+    void shouldPaginateAndFilterByAuthor() {
+        // When
+        CatalogIndex.Result page = columns.query(CatalogColumns.ANY, CatalogColumns.ANY, BrowseSort.NEWEST, 2, 2);
+        CatalogIndex.Result tolkien = columns.query(CatalogColumns.ANY, columns.authorCode("TOLKIEN"),
+                BrowseSort.NEWEST, 1, 5);
+
+        // Then
+        assertIds(page, 2, 1);
+        assertThat(page.getTotal()).isEqualTo(4);
+        assertIds(tolkien, 1);
+        assertThat(tolkien.getTotal()).isEqualTo(2);
+        assertThat(columns.authorCode("Nobody")).isEqualTo(CatalogColumns.UNKNOWN_AUTHOR);
+    }
+
+    @Test
+    @DisplayName("Should apply inserts, updates and removals as copies")
+    void shouldApplyChangesCopyOnWrite() {
+        // When
+        CatalogColumns changed = columns
+                .with(row(5, "Le Guin", "1.00", BookType.SELL, 5))
+                .with(row(1, "Tolkien", "0.50", BookType.SELL, 0))
+                .without(4);
+
+        // Then
+        assertIds(changed.query(CatalogColumns.ANY, CatalogColumns.ANY, BrowseSort.NEWEST, 0, 10), 5, 3, 2, 1);
+        assertIds(changed.query(BookType.SELL.ordinal(), CatalogColumns.ANY, BrowseSort.PRICE_ASC, 0, 10), 1, 5, 3);
+        assertIds(changed.query(CatalogColumns.ANY, changed.authorCode("le guin"), BrowseSort.NEWEST, 0, 10), 5);
+        assertThat(columns.size()).isEqualTo(4);
+        assertThat(columns.contains(5)).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should end up in the same orders after many changes as a fresh load of the same rows")
+    void shouldMatchFreshLoadAfterIncrementalChanges() {
+        // Given - few distinct prices and dates, so ties on both are common
+        Random random = new Random(42);
+        Map<Long, BookBrowseRow> expected = new LinkedHashMap<>();
+        CatalogColumns changed = CatalogColumns.of(List.of());
+
+        // When
+        for (int i = 0; i < 2000; i++) {
+            long id = 1 + random.nextInt(60);
+            if (random.nextInt(4) == 0) {
+                expected.remove(id);
+                changed = changed.without(id);
+            } else {
+                BookBrowseRow row = row(id, "Author " + random.nextInt(5), (random.nextInt(4) * 5) + ".00",
+                        BookType.values()[random.nextInt(BookType.values().length)], random.nextInt(3));
+                expected.put(id, row);
+                changed = changed.with(row);
+            }
+        }
+        CatalogColumns loaded = CatalogColumns.of(new ArrayList<>(expected.values()));
+
+        // Then
+        assertThat(changed.size()).isEqualTo(loaded.size());
+        for (BrowseSort sort : BrowseSort.values()) {
+            assertSameIds(changed, loaded, CatalogColumns.ANY, sort);
+            for (BookType type : BookType.values()) {
+                assertSameIds(changed, loaded, type.ordinal(), sort);
+            }
+        }
+    }
+
+    private static void assertSameIds(CatalogColumns actual, CatalogColumns expected, int type, BrowseSort sort) {
+        assertThat(actual.query(type, CatalogColumns.ANY, sort, 0, 1000).getIds())
+                .as("%s, type %d", sort, type)
+                .containsExactly(expected.query(type, CatalogColumns.ANY, sort, 0, 1000).getIds());
+    }
+
+    private static void assertIds(CatalogIndex.Result result, long... expected) {
+        assertThat(result.getIds()).containsExactly(expected);
+    }
+
+    private static BookBrowseRow row(long id, String author, String price, BookType type, int daysAfter) {
+        return new BookBrowseRow() {
+            @Override
+            public Long getId() { return id; }
+
+            @Override
+            public String getAuthor() { return author; }
+
+            @Override
+            public BigDecimal getPrice() { return price == null ? null : new BigDecimal(price); }
+
+            @Override
+            public BookType getType() { return type; }
+
+            @Override
+            public LocalDateTime getCreatedAt() { return NOW.plusDays(daysAfter); }
+        };
+    }
+}
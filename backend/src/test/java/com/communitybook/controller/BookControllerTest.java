@@ -1,8 +1,17 @@
 package com.communitybook.controller;
 
+import com.communitybook.cache.ListingSnapshots;
+import com.communitybook.cache.PhotoCache;
+import com.communitybook.lookup.BookLookupResult;
+import com.communitybook.lookup.BookSummary;
 import com.communitybook.model.Book;
 import com.communitybook.model.BookType;
+import com.communitybook.photo.DuplicatePhotoDetector;
+import com.communitybook.photo.DuplicatePhotoException;
+import com.communitybook.resilience.ReadDegradation;
 import com.communitybook.service.BookService;
+import com.communitybook.service.CatalogVersion;
+import com.communitybook.stats.BookStats;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
@@ -10,6 +19,9 @@ import org.junit.jupiter.api.Test;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
 import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.mock.web.MockMultipartFile;
 import org.springframework.test.web.servlet.MockMvc;
@@ -17,17 +29,21 @@ import org.springframework.test.web.servlet.MockMvc;
 import java.math.BigDecimal;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
 import static org.hamcrest.Matchers.*;
 import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.*;
 import static org.springframework.test.web.servlet.result.MockMvcResultHandlers.print;
 import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.*;
 
 @WebMvcTest(BookController.class)
+@Import({PhotoCache.class, ListingSnapshots.class, CatalogVersion.class, ReadDegradation.class})
 @DisplayName("BookController Unit Tests")
 class BookControllerTest {
 
@@ -37,13 +53,26 @@ class BookControllerTest {
     @MockBean
     private BookService bookService;
 
+    @MockBean
+    private DuplicatePhotoDetector duplicatePhotoDetector;
+
     @Autowired
     private ObjectMapper objectMapper;
 
+    @Autowired
+    private PhotoCache photoCache;
+
+    @Autowired
+    private ListingSnapshots listingSnapshots;
+
     private Book testBook;
 
     @BeforeEach
     void setUp() {
+        photoCache.clear();
+        listingSnapshots.clear();
+        when(duplicatePhotoDetector.check(any())).thenReturn(DuplicatePhotoDetector.Check.NONE);
+
         testBook = new Book();
         testBook.setId(1L);
         testBook.setTitle("Test Book");
@@ -72,14 +101,63 @@ class BookControllerTest {
                 .andExpect(jsonPath("$", hasSize(1)))
                 .andExpect(jsonPath("$[0].title", is("Test Book")))
                 .andExpect(jsonPath("$[0].author", is("Test Author")))
-                .andExpect(jsonPath("$[0].price", is(15.99)));
+                .andExpect(jsonPath("$[0].price", is(15.99)))
+                .andExpect(header().string("Server-Timing", containsString("app;dur=")));
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/books - Should let the frontend read the diagnostic response headers")
+    void getAllBooks_FromFrontendOrigin_ShouldExposeDiagnosticHeaders() throws Exception {
+        // Given
+        when(bookService.getAllBooks()).thenReturn(Arrays.asList(testBook));
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/books").header(HttpHeaders.ORIGIN, "http://localhost:3000"))
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.ACCESS_CONTROL_EXPOSE_HEADERS,
+                        allOf(containsString("Server-Timing"), containsString("X-Request-Id"))));
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/books - Should answer 304 from the snapshot when the ETag matches")
+    void getAllBooks_WithMatchingETag_ShouldReturnNotModified() throws Exception {
+        // Given
+        when(bookService.getAllBooks()).thenReturn(Arrays.asList(testBook));
+        String eTag = mockMvc.perform(get("/api/v1/books"))
+                .andExpect(status().isOk())
+                .andExpect(header().exists(HttpHeaders.ETAG))
+                .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/books").header(HttpHeaders.IF_NONE_MATCH, eTag))
+                .andDo(print())
+                .andExpect(status().isNotModified());
+        verify(bookService, times(1)).getAllBooks();
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/books?includeArchived=true - Should include archived listings")
+    void getAllBooks_WithIncludeArchived_ShouldQueryArchive() throws Exception {
+        // Given
+        Book archivedBook = new Book();
+        archivedBook.setId(2L);
+        archivedBook.setTitle("Archived Book");
+        when(bookService.getAllBooks(true)).thenReturn(Arrays.asList(testBook, archivedBook));
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/books").param("includeArchived", "true"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(2)))
+                .andExpect(jsonPath("$[1].title", is("Archived Book")));
+        verify(bookService, times(0)).getAllBooks();
     }
 
     @Test
     @DisplayName("GET /api/v1/books/{id} - Should return book when exists")
     void getBookById_WhenBookExists_ShouldReturnBook() throws Exception {
         // Given
-        when(bookService.getBookById(1L)).thenReturn(Optional.of(testBook));
+        when(bookService.getBookById(1L, false)).thenReturn(Optional.of(testBook));
 
         // When & Then
         mockMvc.perform(get("/api/v1/books/{id}", 1L))
@@ -91,11 +169,31 @@ class BookControllerTest {
                 .andExpect(jsonPath("$.id", is(1)));
     }
 
+    @Test
+    @DisplayName("GET /api/v1/books/{id} - Should serve the last known good book when the database fails")
+    void getBookById_WhenDatabaseFails_ShouldServeStaleResponse() throws Exception {
+        // Given
+        when(bookService.getBookById(1L, false))
+                .thenReturn(Optional.of(testBook))
+                .thenThrow(new DataAccessResourceFailureException("Connection is not available"));
+        mockMvc.perform(get("/api/v1/books/{id}", 1L))
+                .andExpect(status().isOk())
+                .andExpect(header().doesNotExist(HttpHeaders.WARNING));
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/books/{id}", 1L))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(header().string(HttpHeaders.WARNING, containsString("110")))
+                .andExpect(header().exists(HttpHeaders.AGE))
+                .andExpect(jsonPath("$.title", is("Test Book")));
+    }
+
     @Test
     @DisplayName("GET /api/v1/books/{id} - Should return 404 when book not found")
     void getBookById_WhenBookNotFound_ShouldReturn404() throws Exception {
         // Given
-        when(bookService.getBookById(999L)).thenReturn(Optional.empty());
+        when(bookService.getBookById(999L, false)).thenReturn(Optional.empty());
 
         // When & Then
         mockMvc.perform(get("/api/v1/books/{id}", 999L))
@@ -135,6 +233,75 @@ class BookControllerTest {
                 .andExpect(jsonPath("$.author", is("Test Author")));
     }
 
+    @Test
+    @DisplayName("POST /api/v1/books/upload - Should refuse a duplicate photo with 409 in reject mode")
+    void createBookWithPhoto_WhenPhotoIsDuplicate_ShouldReturnConflict() throws Exception {
+        // Given
+        when(duplicatePhotoDetector.check(any())).thenThrow(new DuplicatePhotoException(42L));
+        MockMultipartFile photo = new MockMultipartFile("photo", "test-image.jpg", "image/jpeg",
+                "test image content".getBytes());
+        MockMultipartFile bookPart = new MockMultipartFile("book", "", "application/json",
+                objectMapper.writeValueAsBytes(testBook));
+
+        // When & Then
+        mockMvc.perform(multipart("/api/v1/books/upload")
+                        .file(bookPart)
+                        .file(photo))
+                .andExpect(status().isConflict())
+                .andExpect(header().string(DuplicatePhotoDetector.DUPLICATE_OF_HEADER, "42"));
+        verify(bookService, times(0)).saveBook(any(Book.class));
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/books/stats - Should return the catalog statistics")
+    void getStats_ShouldReturnStatistics() throws Exception {
+        // Given
+        BookStats stats = new BookStats(3, Map.of(BookType.SELL, 2L, BookType.GIVEAWAY, 1L),
+                Map.of("2026-10-19", 3L), new BigDecimal("12.50"), new BigDecimal("10.00"),
+                List.of(new BookStats.AuthorCount("Test Author", 2)));
+        when(bookService.getStats()).thenReturn(stats);
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/books/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalListings", is(3)))
+                .andExpect(jsonPath("$.listingsByType.SELL", is(2)))
+                .andExpect(jsonPath("$.newListingsPerDay['2026-10-19']", is(3)))
+                .andExpect(jsonPath("$.averageSellPrice", is(12.5)))
+                .andExpect(jsonPath("$.topAuthors[0].author", is("Test Author")));
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/books?ids= - Should return the requested books and the missing ids")
+    void lookupBooks_ShouldReturnBooksAndMissingIds() throws Exception {
+        // Given
+        BookSummary summary = new BookSummary(1L, "Test Book", "Test Author", new BigDecimal("15.99"),
+                "/v1/books/1/photo", BookType.SELL, null, "Test Owner", "EMAIL", "test@example.com", null, null);
+        when(bookService.lookupBooks(List.of(1L, 2L))).thenReturn(new BookLookupResult(List.of(summary), List.of(2L)));
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/books").param("ids", "1,2"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.books", hasSize(1)))
+                .andExpect(jsonPath("$.books[0].title", is("Test Book")))
+                .andExpect(jsonPath("$.books[0].photoData").doesNotExist())
+                .andExpect(jsonPath("$.missingIds[0]", is(2)));
+    }
+
+    @Test
+    @DisplayName("POST /api/v1/books/lookup - Should return 400 when too many ids are requested")
+    void lookupBooks_WithTooManyIds_ShouldReturnBadRequest() throws Exception {
+        // Given
+        when(bookService.lookupBooks(any())).thenThrow(new IllegalArgumentException("At most 500 ids can be looked up at once."));
+
+        // When & Then
+        mockMvc.perform(post("/api/v1/books/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\": [1, 2, 3]}"))
+                .andExpect(status().isBadRequest())
+                .andExpect(content().string(containsString("At most")));
+    }
+
     @Test
     @DisplayName("GET /api/v1/books/type/{type} - Should return books by type")
     void getBooksByType_ShouldReturnFilteredBooks() throws Exception {
@@ -156,7 +323,7 @@ class BookControllerTest {
     void searchBooks_ShouldReturnMatchingBooks() throws Exception {
         // Given
         List<Book> searchResults = Arrays.asList(testBook);
-        when(bookService.searchBooks("Test")).thenReturn(searchResults);
+        when(bookService.searchBooks("Test", false)).thenReturn(searchResults);
 
         // When & Then
         mockMvc.perform(get("/api/v1/books/search")
@@ -225,7 +392,7 @@ class BookControllerTest {
     void getBookPhoto_WhenPhotoExists_ShouldReturnPhoto() throws Exception {
         // Given
         testBook.setPhotoData("test image data".getBytes());
-        when(bookService.getBookById(1L)).thenReturn(Optional.of(testBook));
+        when(bookService.getBookById(1L, true)).thenReturn(Optional.of(testBook));
 
         // When & Then
         mockMvc.perform(get("/api/v1/books/{id}/photo", 1L))
@@ -234,16 +401,76 @@ class BookControllerTest {
                 .andExpect(content().contentType(MediaType.IMAGE_JPEG));
     }
 
+    @Test
+    @DisplayName("GET /api/v1/books/{id}/photo - Should serve the photo of an archived listing")
+    void getBookPhoto_WhenListingIsArchived_ShouldLookInArchive() throws Exception {
+        // Given
+        byte[] png = {(byte) 0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A};
+        testBook.setPhotoData(png);
+        when(bookService.getBookById(7L, true)).thenReturn(Optional.of(testBook));
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/books/{id}/photo", 7L))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(content().contentType(MediaType.IMAGE_PNG))
+                .andExpect(content().bytes(png));
+    }
+
     @Test
     @DisplayName("GET /api/v1/books/{id}/photo - Should return 404 when photo not found")
     void getBookPhoto_WhenPhotoNotFound_ShouldReturn404() throws Exception {
         // Given
         testBook.setPhotoData(null); // No photo data
-        when(bookService.getBookById(1L)).thenReturn(Optional.of(testBook));
+        when(bookService.getBookById(1L, true)).thenReturn(Optional.of(testBook));
 
         // When & Then
         mockMvc.perform(get("/api/v1/books/{id}/photo", 1L))
                 .andDo(print())
                 .andExpect(status().isNotFound());
     }
+
+    @Test
+    @DisplayName("GET /api/v1/books/{id}/photo - Should serve repeated requests from the photo cache")
+    void getBookPhoto_WhenRequestedTwice_ShouldLoadFromServiceOnce() throws Exception {
+        // Given
+        byte[] png = {(byte) 0x89, 0x50, 0x4E, 0x47, 0x0D, 0x0A, 0x1A, 0x0A};
+        testBook.setPhotoData(png);
+        when(bookService.getBookById(1L, true)).thenReturn(Optional.of(testBook));
+
+        // When & Then
+        for (int i = 0; i < 2; i++) {
+            mockMvc.perform(get("/api/v1/books/{id}/photo", 1L))
+                    .andExpect(status().isOk())
+                    .andExpect(content().contentType(MediaType.IMAGE_PNG))
+                    .andExpect(content().bytes(png));
+        }
+        verify(bookService, times(1)).getBookById(1L, true);
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/books/browse - Should reject an unknown sort order")
+    void browseBooks_WithUnknownSort_ShouldReturnBadRequest() throws Exception {
+        // When & Then
+        mockMvc.perform(get("/api/v1/books/browse").param("sort", "popularity"))
+                .andDo(print())
+                .andExpect(status().isBadRequest());
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/books/{id}/similar - Should return similar books or 404")
+    void getSimilarBooks_ShouldReturnSimilarBooksOrNotFound() throws Exception {
+        // Given
+        when(bookService.getSimilarBooks(1L, 5)).thenReturn(Optional.of(List.of(testBook)));
+        when(bookService.getSimilarBooks(999L, 10)).thenReturn(Optional.empty());
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/books/1/similar").param("limit", "5"))
+                .andDo(print())
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$", hasSize(1)))
+                .andExpect(jsonPath("$[0].title", is("Test Book")));
+        mockMvc.perform(get("/api/v1/books/999/similar"))
+                .andExpect(status().isNotFound());
+    }
 }
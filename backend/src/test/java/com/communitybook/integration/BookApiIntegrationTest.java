@@ -2,8 +2,10 @@ package com.communitybook.integration;
 
 import com.communitybook.model.Book;
 import com.communitybook.model.BookType;
+import com.communitybook.photo.DuplicatePhotoDetector;
 import com.communitybook.repository.BookRepository;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
@@ -17,6 +19,11 @@ import org.springframework.test.context.ActiveProfiles;
 import org.springframework.test.web.servlet.MockMvc;
 import org.springframework.transaction.annotation.Transactional;
 
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
 import java.math.BigDecimal;
 
 import static org.hamcrest.Matchers.*;
@@ -173,4 +180,133 @@ class BookApiIntegrationTest {
                 .andDo(print())
                 .andExpect(status().isBadRequest());
     }
+
+    @Test
+    @DisplayName("GET /api/v1/books/browse - Should filter, sort and follow new listings")
+    void browseBooks_ShouldFilterSortAndFollowWrites() throws Exception {
+        // Given
+        bookRepository.save(testBook);
+        Book cheaper = new Book();
+        cheaper.setTitle("Cheaper Book");
+        cheaper.setAuthor("Other Author");
+        cheaper.setPrice(new BigDecimal("4.50"));
+        cheaper.setPhotoUrl("/v1/books/test/photo");
+        cheaper.setType(BookType.SELL);
+        cheaper.setOwnerName("Test Owner");
+        cheaper.setContactMethod("EMAIL");
+        cheaper.setContactInfo("test@example.com");
+        bookRepository.save(cheaper);
+
+        // When & Then
+        mockMvc.perform(get("/api/v1/books/browse").param("type", "SELL").param("sort", "price_asc"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElements", is(2)))
+                .andExpect(jsonPath("$.content[0].title", is("Cheaper Book")))
+                .andExpect(jsonPath("$.content[1].title", is("Test Book")));
+
+        // A listing created through the API shows up without reloading the index
+        ObjectNode newListing = objectMapper.valueToTree(testBook);
+        newListing.remove("id");
+        MockMultipartFile bookPart = new MockMultipartFile("book", "", "application/json",
+                objectMapper.writeValueAsBytes(newListing));
+        MockMultipartFile photo = new MockMultipartFile("photo", "test.jpg", "image/jpeg", "test".getBytes());
+        mockMvc.perform(multipart("/api/v1/books/upload").file(bookPart).file(photo))
+                .andExpect(status().isCreated());
+
+        mockMvc.perform(get("/api/v1/books/browse").param("author", "test author").param("size", "1"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalElements", is(2)))
+                .andExpect(jsonPath("$.totalPages", is(2)))
+                .andExpect(jsonPath("$.content", hasSize(1)));
+    }
+
+    @Test
+    @DisplayName("POST /api/v1/books/upload - Should flag a re-posted photo with X-Duplicate-Of")
+    void createBookWithPhoto_WhenPhotoWasPostedBefore_ShouldFlagDuplicate() throws Exception {
+        // Given: a cover, and a larger copy as GIF
+        byte[] png = cover(240, 360, "png");
+        byte[] gif = cover(480, 720, "gif");
+
+        ObjectNode listing = objectMapper.valueToTree(testBook);
+        listing.remove("id");
+        MockMultipartFile bookPart = new MockMultipartFile("book", "", "application/json",
+                objectMapper.writeValueAsBytes(listing));
+
+        // When
+        String first = mockMvc.perform(multipart("/api/v1/books/upload").file(bookPart)
+                        .file(new MockMultipartFile("photo", "cover.png", "image/png", png)))
+                .andExpect(status().isCreated())
+                .andExpect(header().doesNotExist(DuplicatePhotoDetector.DUPLICATE_OF_HEADER))
+                .andReturn().getResponse().getContentAsString();
+        long firstId = objectMapper.readTree(first).get("id").asLong();
+
+        // Then: the same cover at another size and format is recognised, but still accepted in the default warn mode
+        mockMvc.perform(multipart("/api/v1/books/upload").file(bookPart)
+                        .file(new MockMultipartFile("photo", "cover.gif", "image/gif", gif)))
+                .andExpect(status().isCreated())
+                .andExpect(header().string(DuplicatePhotoDetector.DUPLICATE_OF_HEADER, Long.toString(firstId)));
+    }
+
+    @Test
+    @DisplayName("GET /api/v1/books/stats - Should count listings created through the API")
+    void getStats_ShouldFollowNewListings() throws Exception {
+        // Given
+        mockMvc.perform(get("/api/v1/books/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalListings", is(0)));
+        ObjectNode listing = objectMapper.valueToTree(testBook);
+        listing.remove("id");
+        MockMultipartFile bookPart = new MockMultipartFile("book", "", "application/json",
+                objectMapper.writeValueAsBytes(listing));
+        MockMultipartFile photo = new MockMultipartFile("photo", "test.jpg", "image/jpeg", "test".getBytes());
+
+        // When
+        mockMvc.perform(multipart("/api/v1/books/upload").file(bookPart).file(photo))
+                .andExpect(status().isCreated());
+
+        // Then
+        mockMvc.perform(get("/api/v1/books/stats"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.totalListings", is(1)))
+                .andExpect(jsonPath("$.listingsByType.SELL", is(1)))
+                .andExpect(jsonPath("$.averageSellPrice", is(15.99)))
+                .andExpect(jsonPath("$.topAuthors[0].author", is("Test Author")))
+                .andExpect(jsonPath("$.topAuthors[0].count", is(1)));
+    }
+
+    @Test
+    @DisplayName("POST /api/v1/books/lookup - Should return many books without photo bytes")
+    void lookupBooks_ShouldReturnBooksInRequestOrder() throws Exception {
+        // Given
+        testBook.setPhotoData("photo".getBytes());
+        Book first = bookRepository.save(testBook);
+        Book second = new Book("Second Book", "Other Author", null, "/v1/books/test/photo", null,
+                BookType.GIVEAWAY, null, "Test Owner", "EMAIL", "test@example.com");
+        second = bookRepository.save(second);
+        long missing = second.getId() + 1000;
+
+        // When & Then
+        mockMvc.perform(post("/api/v1/books/lookup")
+                        .contentType(MediaType.APPLICATION_JSON)
+                        .content("{\"ids\": [" + second.getId() + ", " + missing + ", " + first.getId() + "]}"))
+                .andExpect(status().isOk())
+                .andExpect(jsonPath("$.books", hasSize(2)))
+                .andExpect(jsonPath("$.books[0].title", is("Second Book")))
+                .andExpect(jsonPath("$.books[1].title", is("Test Book")))
+                .andExpect(jsonPath("$.books[1].photoData").doesNotExist())
+                .andExpect(jsonPath("$.missingIds[0]", is((int) missing)));
+    }
+
+    private static byte[] cover(int width, int height, String format) throws Exception {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(new Color(30, 60, 120));
+        g.fillRect(0, 0, width, height);
+        g.setColor(Color.ORANGE);
+        g.fillRect(width / 6, height / 4, width / 2, height / 3);
+        g.dispose();
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
 }
@@ -0,0 +1,163 @@
+package com.communitybook.invalidation;
+
+import com.communitybook.event.BookChangedEvent;
+import com.communitybook.event.BookChangedEvent.ChangeType;
+import com.communitybook.service.CatalogVersion;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("InvalidationBus Unit Tests - Loopback Transport")
+class InvalidationBusTest {
+
+    private final LoopbackInvalidationTransport.Hub hub = new LoopbackInvalidationTransport.Hub();
+
+    private final LoopbackInvalidationTransport transportA = new LoopbackInvalidationTransport(hub);
+    private final LoopbackInvalidationTransport transportB = new LoopbackInvalidationTransport(hub);
+
+    private final List<BookChangedEvent> eventsOnA = new CopyOnWriteArrayList<>();
+    private final List<BookChangedEvent> eventsOnB = new CopyOnWriteArrayList<>();
+
+    private final CatalogVersion versionOnB = new CatalogVersion();
+
+    private InvalidationBus nodeA;
+    private InvalidationBus nodeB;
+
+    @BeforeEach
+    void setUp() {
+        // A long batch window so the tests decide when batches are flushed
+        nodeA = new InvalidationBus(transportA, event -> eventsOnA.add((BookChangedEvent) event),
+                new CatalogVersion(), "node-a", Duration.ofHours(1), Duration.ofHours(1));
+        nodeB = new InvalidationBus(transportB, event -> eventsOnB.add((BookChangedEvent) event),
+                versionOnB, "node-b", Duration.ofHours(1), Duration.ofHours(1));
+        nodeA.start();
+        nodeB.start();
+    }
+
+    @AfterEach
+    void tearDown() {
+        nodeA.stop();
+        nodeB.stop();
+    }
+
+    @Test
+    @DisplayName("Should coalesce local changes into one batch and replay them on the other node")
+    void flush_ShouldDeliverCoalescedIdsToOtherNodes() {
+        // Given
+        nodeA.onBookChanged(new BookChangedEvent(1L, ChangeType.CREATED, 1));
+        nodeA.onBookChanged(new BookChangedEvent(1L, ChangeType.UPDATED, 2));
+        nodeA.onBookChanged(new BookChangedEvent(2L, ChangeType.DELETED, 3));
+
+        // When
+        nodeA.flush();
+
+        // Then
+        assertThat(eventsOnA).isEmpty();
+        assertThat(eventsOnB).extracting(BookChangedEvent::getBookId).containsExactly(1L, 2L);
+        assertThat(eventsOnB).allMatch(BookChangedEvent::isRemote);
+        assertThat(versionOnB.current()).isEqualTo(1);
+    }
+
+    @Test
+    @DisplayName("Should not re-broadcast changes that arrived from another node")
+    void onBookChanged_WithRemoteEvent_ShouldNotPublish() {
+        // Given
+        nodeB.onBookChanged(new BookChangedEvent(5L, ChangeType.INVALIDATED, 1, true));
+
+        // When
+        nodeB.flush();
+
+        // Then
+        assertThat(transportA.latestVersion()).isZero();
+        assertThat(eventsOnA).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should invalidate everything after reconnecting if batches were missed")
+    void reconnect_AfterMissedBatch_ShouldTriggerFullInvalidation() {
+        // Given
+        transportB.disconnect();
+        nodeA.onBookChanged(new BookChangedEvent(7L, ChangeType.UPDATED, 1));
+        nodeA.flush();
+        assertThat(eventsOnB).isEmpty();
+
+        // When
+        transportB.reconnect();
+
+        // Then
+        assertThat(eventsOnB).hasSize(1);
+        assertThat(eventsOnB.get(0).isFullInvalidation()).isTrue();
+    }
+
+    @Test
+    @DisplayName("Should not invalidate anything after reconnecting if nothing was missed")
+    void reconnect_WithoutMissedBatches_ShouldDoNothing() {
+        // Given
+        nodeA.onBookChanged(new BookChangedEvent(7L, ChangeType.UPDATED, 1));
+        nodeA.flush();
+        transportB.disconnect();
+
+        // When
+        transportB.reconnect();
+
+        // Then
+        assertThat(eventsOnB).extracting(BookChangedEvent::getBookId).containsExactly(7L);
+    }
+
+    @Test
+    @DisplayName("Should give up on a version that was never delivered once the gap times out")
+    void receive_WithBurnedVersion_ShouldStopWaitingAfterGapTimeout() {
+        // Given - a node that does not wait for gaps at all, and version 1 was assigned but never sent
+        List<BookChangedEvent> events = new CopyOnWriteArrayList<>();
+        InvalidationBus node = new InvalidationBus(new LoopbackInvalidationTransport(hub),
+                event -> events.add((BookChangedEvent) event), new CatalogVersion(), "node-c",
+                Duration.ofHours(1), Duration.ZERO);
+
+        // When
+        node.receive(new InvalidationBatch("node-a", 2, false, Set.of(4L)));
+        node.receive(new InvalidationBatch("node-a", 3, false, Set.of(5L)));
+        node.resync(3);
+
+        // Then
+        assertThat(node.seenThrough()).isEqualTo(3);
+        assertThat(events).extracting(BookChangedEvent::getBookId).containsExactly(4L, 5L);
+    }
+
+    @Test
+    @DisplayName("Should keep waiting for a missing version while the gap is young")
+    void receive_OutOfOrder_ShouldCloseGapWhenMissingVersionArrives() {
+        // When
+        nodeB.receive(new InvalidationBatch("node-a", 2, false, Set.of(4L)));
+        long whileMissing = nodeB.seenThrough();
+        nodeB.receive(new InvalidationBatch("node-a", 1, false, Set.of(3L)));
+
+        // Then
+        assertThat(whileMissing).isZero();
+        assertThat(nodeB.seenThrough()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should round-trip batches through the NOTIFY payload format")
+    void encode_ThenDecode_ShouldPreserveBatch() {
+        // Given
+        InvalidationBatch batch = new InvalidationBatch("node-a", 42, false, new LinkedHashSet<>(List.of(3L, 9L)));
+
+        // When
+        InvalidationBatch decoded = InvalidationBatch.decode(batch.encode());
+
+        // Then
+        assertThat(decoded.getOriginNode()).isEqualTo("node-a");
+        assertThat(decoded.getVersion()).isEqualTo(42);
+        assertThat(decoded.getBookIds()).containsExactly(3L, 9L);
+        assertThat(InvalidationBatch.decode("node-a|43|*").isAll()).isTrue();
+    }
+}
@@ -0,0 +1,157 @@
+package com.communitybook.invalidation;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@DisplayName("PostgresInvalidationTransport Unit Tests - Listener")
+class PostgresInvalidationTransportTest {
+
+    private final JdbcTemplate jdbcTemplate = mock(JdbcTemplate.class);
+
+    private PostgresInvalidationTransport transport;
+
+    @AfterEach
+    void tearDown() {
+        if (transport != null) {
+            transport.stop();
+        }
+    }
+
+    @Test
+    @DisplayName("Should keep listening when the resync after a reconnect throws")
+    void listen_ShouldRetryWhenOnReconnectThrows() throws Exception {
+        // Given - the first connection drops, the resync on the second one fails, the third one delivers a batch
+        when(jdbcTemplate.queryForObject(anyString(), eq(Long.class))).thenReturn(7L);
+        List<Connection> connections = List.of(
+                droppingConnection(),
+                idleConnection(),
+                deliveringConnection(new InvalidationBatch("node-b", 8, false, Set.of(3L)).encode()));
+        AtomicInteger connects = new AtomicInteger();
+        transport = new PostgresInvalidationTransport(jdbcTemplate, "jdbc:postgresql://unused", "u", "p", 1) {
+            @Override
+            Connection connect() {
+                return connections.get(Math.min(connects.getAndIncrement(), connections.size() - 1));
+            }
+        };
+
+        List<Long> reconnects = new CopyOnWriteArrayList<>();
+        List<InvalidationBatch> batches = new CopyOnWriteArrayList<>();
+        CountDownLatch delivered = new CountDownLatch(1);
+
+        // When
+        transport.start(new InvalidationTransport.Listener() {
+            @Override
+            public void onBatch(InvalidationBatch batch) {
+                batches.add(batch);
+                delivered.countDown();
+            }
+
+            @Override
+            public void onReconnect(long latestVersion) {
+                reconnects.add(latestVersion);
+                if (reconnects.size() == 1) {
+                    throw new DataAccessResourceFailureException("pool exhausted");
+                }
+            }
+        });
+
+        // Then
+        assertThat(delivered.await(5, TimeUnit.SECONDS)).isTrue();
+        assertThat(reconnects).containsExactly(7L, 7L);
+        assertThat(batches).singleElement().satisfies(batch -> {
+            assertThat(batch.getVersion()).isEqualTo(8);
+            assertThat(batch.getBookIds()).containsExactly(3L);
+        });
+    }
+
+    @Test
+    @DisplayName("Should be listening when start returns, so the version read afterwards misses nothing")
+    void start_ShouldIssueListenBeforeReturning() throws Exception {
+        // Given
+        Connection connection = idleConnection();
+        Statement statement = connection.createStatement();
+        transport = new PostgresInvalidationTransport(jdbcTemplate, "jdbc:postgresql://unused", "u", "p", 1) {
+            @Override
+            Connection connect() {
+                return connection;
+            }
+        };
+        List<Long> reconnects = new CopyOnWriteArrayList<>();
+
+        // When
+        transport.start(new InvalidationTransport.Listener() {
+            @Override
+            public void onBatch(InvalidationBatch batch) {
+            }
+
+            @Override
+            public void onReconnect(long latestVersion) {
+                reconnects.add(latestVersion);
+            }
+        });
+
+        // Then - the first connection is not a reconnect: nothing was missed before it
+        verify(statement).execute("LISTEN " + PostgresInvalidationTransport.CHANNEL);
+        Thread.sleep(50);
+        assertThat(reconnects).isEmpty();
+        verify(jdbcTemplate, never()).queryForObject(anyString(), eq(Long.class));
+    }
+
+    private Connection droppingConnection() throws SQLException {
+        PGConnection pgConnection = mock(PGConnection.class);
+        when(pgConnection.getNotifications(anyInt())).thenThrow(new SQLException("connection reset"));
+        return connection(pgConnection);
+    }
+
+    private Connection idleConnection() throws SQLException {
+        PGConnection pgConnection = mock(PGConnection.class);
+        when(pgConnection.getNotifications(anyInt())).thenAnswer(invocation -> idle());
+        return connection(pgConnection);
+    }
+
+    private Connection deliveringConnection(String payload) throws SQLException {
+        PGNotification notification = mock(PGNotification.class);
+        when(notification.getParameter()).thenReturn(payload);
+        PGConnection pgConnection = mock(PGConnection.class);
+        when(pgConnection.getNotifications(anyInt()))
+                .thenReturn(new PGNotification[]{notification})
+                .thenAnswer(invocation -> idle());
+        return connection(pgConnection);
+    }
+
+    private Connection connection(PGConnection pgConnection) throws SQLException {
+        Connection connection = mock(Connection.class);
+        when(connection.createStatement()).thenReturn(mock(Statement.class));
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        return connection;
+    }
+
+    private static PGNotification[] idle() throws InterruptedException {
+        Thread.sleep(10);
+        return null;
+    }
+}
@@ -0,0 +1,99 @@
+package com.communitybook.logging;
+
+import ch.qos.logback.classic.Level;
+import ch.qos.logback.classic.LoggerContext;
+import ch.qos.logback.core.spi.FilterReply;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.slf4j.MDC;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("RequestLoggingFilter Unit Tests")
+class RequestLoggingFilterTest {
+
+    @Test
+    @DisplayName("Should propagate a valid X-Request-Id into the MDC and the response")
+    void shouldPropagateRequestId() throws Exception {
+        // Given
+        RequestLoggingFilter filter = new RequestLoggingFilter(0, Duration.ofSeconds(1), "");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/books");
+        request.addHeader(RequestLoggingFilter.REQUEST_ID_HEADER, "lb-1234");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        List<String> seen = new ArrayList<>();
+
+        // When
+        filter.doFilter(request, response, (req, res) -> seen.add(MDC.get(RequestLoggingFilter.MDC_REQUEST_ID)));
+
+        // Then
+        assertThat(seen).containsExactly("lb-1234");
+        assertThat(response.getHeader(RequestLoggingFilter.REQUEST_ID_HEADER)).isEqualTo("lb-1234");
+        assertThat(MDC.get(RequestLoggingFilter.MDC_REQUEST_ID)).isNull();
+    }
+
+    @Test
+    @DisplayName("Should replace malformed request ids with a generated one")
+    void shouldReplaceMalformedRequestId() throws Exception {
+        // Given
+        RequestLoggingFilter filter = new RequestLoggingFilter(0, Duration.ofSeconds(1), "");
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/books");
+        request.addHeader(RequestLoggingFilter.REQUEST_ID_HEADER, "bad\nid");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When
+        filter.doFilter(request, response, (req, res) -> { });
+
+        // Then
+        assertThat(response.getHeader(RequestLoggingFilter.REQUEST_ID_HEADER)).hasSize(36);
+    }
+
+    @Test
+    @DisplayName("Should mark 1 in N requests and requests with the debug token as verbose")
+    void shouldMarkSampledAndDebugRequestsVerbose() throws Exception {
+        // Given
+        RequestLoggingFilter filter = new RequestLoggingFilter(3, Duration.ofSeconds(1), "s3cret");
+        List<String> verbose = new ArrayList<>();
+
+        // When
+        for (int i = 0; i < 6; i++) {
+            filter.doFilter(new MockHttpServletRequest("GET", "/api/v1/books"), new MockHttpServletResponse(),
+                    (req, res) -> verbose.add(MDC.get(RequestLoggingFilter.MDC_VERBOSE)));
+        }
+        MockHttpServletRequest debug = new MockHttpServletRequest("GET", "/api/v1/books");
+        debug.addHeader(RequestLoggingFilter.DEBUG_HEADER, "s3cret");
+        filter.doFilter(debug, new MockHttpServletResponse(),
+                (req, res) -> verbose.add(MDC.get(RequestLoggingFilter.MDC_VERBOSE)));
+
+        // Then
+        assertThat(verbose).containsExactly(null, null, "true", null, null, "true", "true");
+    }
+
+    @Test
+    @DisplayName("Turbo filter should only force DEBUG on for verbose requests and configured loggers")
+    void turboFilterShouldOnlyAcceptVerboseDebug() {
+        // Given
+        LoggerContext context = new LoggerContext();
+        SamplingTurboFilter turboFilter = new SamplingTurboFilter();
+        turboFilter.addLogger("org.hibernate.SQL");
+        turboFilter.start();
+        ch.qos.logback.classic.Logger sql = context.getLogger("org.hibernate.SQL");
+        ch.qos.logback.classic.Logger other = context.getLogger("org.apache.catalina");
+
+        // When / Then
+        assertThat(turboFilter.decide(null, sql, Level.DEBUG, "select", null, null)).isEqualTo(FilterReply.NEUTRAL);
+        MDC.put(RequestLoggingFilter.MDC_VERBOSE, "true");
+        try {
+            assertThat(turboFilter.decide(null, sql, Level.DEBUG, "select", null, null)).isEqualTo(FilterReply.ACCEPT);
+            assertThat(turboFilter.decide(null, sql, Level.TRACE, "bind", null, null)).isEqualTo(FilterReply.NEUTRAL);
+            assertThat(turboFilter.decide(null, other, Level.DEBUG, "x", null, null)).isEqualTo(FilterReply.NEUTRAL);
+        } finally {
+            MDC.remove(RequestLoggingFilter.MDC_VERBOSE);
+        }
+    }
+}
@@ -0,0 +1,121 @@
+package com.communitybook.photo;
+
+import com.communitybook.event.BookChangedEvent;
+import com.communitybook.event.BookChangedEvent.ChangeType;
+import com.communitybook.repository.BookPhotoHashRow;
+import com.communitybook.repository.BookRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.awt.Color;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.*;
+
+@DisplayName("DuplicatePhotoDetector Unit Tests - Index Lifecycle")
+class DuplicatePhotoDetectorTest {
+
+    private final BookRepository bookRepository = mock(BookRepository.class);
+    private final DuplicatePhotoDetector detector = new DuplicatePhotoDetector("warn", 4);
+
+    // Lets a test hold the background rebuild inside the table read
+    private final CountDownLatch loading = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    private byte[] photo;
+    private long hash;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ReflectionTestUtils.setField(detector, "bookRepository", bookRepository);
+        photo = PerceptualHashTest.encode(
+                PerceptualHashTest.cover(300, 450, new Color(180, 40, 40), new Color(240, 220, 160)), "png");
+        hash = PerceptualHash.of(photo);
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        detector.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should keep checking uploads against the old index while it is rebuilt")
+    void check_DuringRebuild_ShouldUseOldIndex() throws Exception {
+        // Given - listing 1 has the photo at startup, and is gone by the time the index is rebuilt
+        when(bookRepository.findAllPhotoHashes())
+                .thenReturn(List.of(row(1, hash)))
+                .thenAnswer(invocation -> blockThenReturn());
+        detector.buildAtStartup();
+
+        // When
+        detector.onBookChanged(BookChangedEvent.fullInvalidation(1));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        DuplicatePhotoDetector.Check whileRebuilding = detector.check(photo);
+        release.countDown();
+
+        // Then
+        assertThat(whileRebuilding.getDuplicateOf()).isEqualTo(1L);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (detector.check(photo).getDuplicateOf() != null && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(detector.check(photo).getDuplicateOf()).isNull();
+    }
+
+    @Test
+    @DisplayName("Should replay changes that arrive during a rebuild onto the new index")
+    void onBookChanged_DuringRebuild_ShouldBeReplayed() throws Exception {
+        // Given
+        when(bookRepository.findAllPhotoHashes())
+                .thenReturn(List.of())
+                .thenAnswer(invocation -> blockThenReturn());
+        when(bookRepository.findPhotoHashById(5L)).thenReturn(Optional.of(hash));
+        detector.buildAtStartup();
+        detector.onBookChanged(BookChangedEvent.fullInvalidation(1));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // When - listing 5 is created after the rebuild read the table
+        detector.onBookChanged(new BookChangedEvent(5L, ChangeType.CREATED, 2));
+        release.countDown();
+
+        // Then - once by the event, once more when the rebuild replays it
+        verify(bookRepository, timeout(5000).times(2)).findPhotoHashById(5L);
+        assertThat(detector.check(photo).getDuplicateOf()).isEqualTo(5L);
+    }
+
+    @Test
+    @DisplayName("Should accept uploads unchecked until the index has been built")
+    void check_BeforeFirstBuild_ShouldNotBlockUpload() {
+        // Given
+        when(bookRepository.findAllPhotoHashes()).thenReturn(List.of(row(1, hash)));
+
+        // When
+        DuplicatePhotoDetector.Check check = detector.check(photo);
+
+        // Then
+        assertThat(check.getHash()).isEqualTo(hash);
+        assertThat(check.getDuplicateOf()).isNull();
+        verify(bookRepository, timeout(5000)).findAllPhotoHashes();
+    }
+
+    private List<BookPhotoHashRow> blockThenReturn(BookPhotoHashRow... rows) throws InterruptedException {
+        loading.countDown();
+        release.await(5, TimeUnit.SECONDS);
+        return List.of(rows);
+    }
+
+    private static BookPhotoHashRow row(long id, long photoHash) {
+        return new BookPhotoHashRow() {
+            public Long getId() { return id; }
+            public Long getPhotoHash() { return photoHash; }
+        };
+    }
+}
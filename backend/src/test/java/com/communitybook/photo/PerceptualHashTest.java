@@ -0,0 +1,91 @@
+package com.communitybook.photo;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import javax.imageio.ImageIO;
+import java.awt.Color;
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("PerceptualHash Unit Tests")
+class PerceptualHashTest {
+
+    @Test
+    @DisplayName("Should give re-encoded and resized copies of a photo nearly the same hash")
+    void shouldMatchReencodedAndResizedCopies() throws IOException {
+        // Given
+        BufferedImage cover = cover(600, 900, new Color(180, 40, 40), new Color(240, 220, 160));
+
+        // When
+        Long original = PerceptualHash.of(encode(cover, "png"));
+        Long jpeg = PerceptualHash.of(encode(cover, "jpg"));
+        Long smaller = PerceptualHash.of(encode(resize(cover, 200, 300), "jpg"));
+
+        // Then
+        assertThat(original).isNotNull();
+        assertThat(PerceptualHash.distance(original, jpeg)).isLessThanOrEqualTo(4);
+        assertThat(PerceptualHash.distance(original, smaller)).isLessThanOrEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Should give a different photo a distant hash")
+    void shouldSeparateDifferentPhotos() throws IOException {
+        // Given
+        BufferedImage cover = cover(600, 900, new Color(180, 40, 40), new Color(240, 220, 160));
+        BufferedImage other = new BufferedImage(600, 900, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = other.createGraphics();
+        for (int x = 0; x < 600; x += 50) {
+            g.setColor(x % 100 == 0 ? Color.DARK_GRAY : Color.WHITE);
+            g.fillRect(x, 0, 50, 900);
+        }
+        g.dispose();
+
+        // When
+        Long first = PerceptualHash.of(encode(cover, "png"));
+        Long second = PerceptualHash.of(encode(other, "png"));
+
+        // Then
+        assertThat(PerceptualHash.distance(first, second)).isGreaterThan(10);
+    }
+
+    @Test
+    @DisplayName("Should return null for bytes that are not an image")
+    void shouldReturnNullForNonImages() {
+        assertThat(PerceptualHash.of("test image content".getBytes())).isNull();
+        assertThat(PerceptualHash.of(new byte[0])).isNull();
+    }
+
+    // A plain "book cover": background, a title band and a diagonal stripe
+    static BufferedImage cover(int width, int height, Color background, Color accent) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = image.createGraphics();
+        g.setColor(background);
+        g.fillRect(0, 0, width, height);
+        g.setColor(accent);
+        g.fillRect(width / 8, height / 6, width * 3 / 4, height / 5);
+        g.fillPolygon(new int[] {0, width / 3, width, width * 2 / 3}, new int[] {height, height, height / 2, height / 2}, 4);
+        g.dispose();
+        return image;
+    }
+
+    static byte[] encode(BufferedImage image, String format) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        ImageIO.write(image, format, out);
+        return out.toByteArray();
+    }
+
+    private static BufferedImage resize(BufferedImage image, int width, int height) {
+        BufferedImage resized = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        Graphics2D g = resized.createGraphics();
+        g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+        g.drawImage(image, 0, 0, width, height, null);
+        g.dispose();
+        return resized;
+    }
+}
@@ -0,0 +1,70 @@
+package com.communitybook.photo;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.ArgumentMatchers;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.awt.Color;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("PhotoHashBackfill Unit Tests")
+class PhotoHashBackfillTest {
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private DuplicatePhotoDetector duplicatePhotoDetector;
+
+    @InjectMocks
+    private PhotoHashBackfill photoHashBackfill;
+
+    private byte[] photo;
+    private long hash;
+
+    @BeforeEach
+    void setUp() throws Exception {
+        ReflectionTestUtils.setField(photoHashBackfill, "enabled", true);
+        ReflectionTestUtils.setField(photoHashBackfill, "batchSize", 20);
+        ReflectionTestUtils.setField(photoHashBackfill, "batchPause", Duration.ZERO);
+        photo = PerceptualHashTest.encode(
+                PerceptualHashTest.cover(300, 450, new Color(40, 80, 160), new Color(250, 250, 250)), "png");
+        hash = PerceptualHash.of(photo);
+    }
+
+    @Test
+    @DisplayName("Should only index the hashes of rows the update actually changed")
+    void backfill_WhenRowWasDeletedMeanwhile_ShouldNotIndexIt() {
+        // Given - listing 2 was deleted after the batch was read, so its update matches no row
+        List<Object[]> batch = Arrays.asList(new Object[] {1L, photo}, new Object[] {2L, photo});
+        when(jdbcTemplate.query(anyString(), ArgumentMatchers.<RowMapper<Object[]>>any(), anyLong(), anyInt()))
+                .thenReturn(batch);
+        when(jdbcTemplate.batchUpdate(anyString(), anyList())).thenReturn(new int[] {1, 0});
+
+        // When
+        int hashed = photoHashBackfill.backfill();
+
+        // Then
+        assertThat(hashed).isEqualTo(1);
+        verify(duplicatePhotoDetector).indexHash(1L, hash);
+        verifyNoMoreInteractions(duplicatePhotoDetector);
+    }
+}
@@ -0,0 +1,87 @@
+package com.communitybook.photo;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("PhotoHashIndex Unit Tests")
+class PhotoHashIndexTest {
+
+    @Test
+    @DisplayName("Should find hashes within the maximum distance and nothing further away")
+    void shouldFindHashesWithinDistance() {
+        // Given
+        PhotoHashIndex index = new PhotoHashIndex(4);
+        long hash = 0x5A5A_F00F_1234_ABCDL;
+        index.put(1, hash);
+
+        // When & Then
+        assertThat(index.findNearest(hash)).isEqualTo(1);
+        // Four flipped bits, all in the same chunk, still match
+        assertThat(index.findNearest(hash ^ 0xFL)).isEqualTo(1);
+        // Four flipped bits spread over different chunks still match
+        assertThat(index.findNearest(hash ^ 0x8000_0100_0010_0001L)).isEqualTo(1);
+        assertThat(index.findNearest(hash ^ 0x1FL)).isEqualTo(PhotoHashIndex.NONE);
+    }
+
+    @Test
+    @DisplayName("Should prefer the closest and then the oldest listing, and forget removed ones")
+    void shouldPreferClosestThenOldest() {
+        // Given
+        PhotoHashIndex index = new PhotoHashIndex(4);
+        long hash = 0x0123_4567_89AB_CDEFL;
+        index.put(7, hash ^ 0x3L);
+        index.put(3, hash ^ 0x1L);
+        index.put(5, hash ^ 0x2L);
+
+        // When & Then
+        assertThat(index.findNearest(hash)).isEqualTo(3);
+        index.remove(3);
+        assertThat(index.findNearest(hash)).isEqualTo(5);
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should agree with a brute-force scan across growth and compaction")
+    void shouldMatchBruteForce() {
+        // Given
+        SplittableRandom random = new SplittableRandom(42);
+        PhotoHashIndex index = new PhotoHashIndex(4);
+        Map<Long, Long> reference = new HashMap<>();
+        for (long id = 1; id <= 20_000; id++) {
+            long hash = random.nextLong();
+            index.put(id, hash);
+            reference.put(id, hash);
+            if (id % 3 == 0) {
+                index.remove(id - 1);
+                reference.remove(id - 1);
+            }
+        }
+
+        // When & Then
+        for (int i = 0; i < 500; i++) {
+            long existing = reference.get((long) (random.nextInt(6_000) * 3 + 3));
+            long query = existing ^ (1L << random.nextInt(64)) ^ (1L << random.nextInt(64));
+            assertThat(index.findNearest(query)).isEqualTo(bruteForce(reference, query, 4));
+        }
+        assertThat(index.size()).isEqualTo(reference.size());
+    }
+
+    private static long bruteForce(Map<Long, Long> hashes, long query, int maxDistance) {
+        long best = PhotoHashIndex.NONE;
+        int bestDistance = maxDistance + 1;
+        for (Map.Entry<Long, Long> entry : hashes.entrySet()) {
+            int distance = PerceptualHash.distance(entry.getValue(), query);
+            if (distance < bestDistance || (distance == bestDistance && entry.getKey() < best)) {
+                best = entry.getKey();
+                bestDistance = distance;
+            }
+        }
+        return best;
+    }
+}
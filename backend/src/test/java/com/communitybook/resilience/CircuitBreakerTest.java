@@ -0,0 +1,106 @@
+package com.communitybook.resilience;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("CircuitBreaker Unit Tests")
+class CircuitBreakerTest {
+
+    private final AtomicLong clock = new AtomicLong();
+
+    // Opens when half of the last 10 calls (at least 4) were bad; calls over 100 ms count as bad
+    private final CircuitBreaker breaker = new CircuitBreaker("test", 10, 4, 0.5,
+            Duration.ofMillis(100), Duration.ofSeconds(10), clock::get);
+
+    private static final long FAST = Duration.ofMillis(5).toNanos();
+    private static final long SLOW = Duration.ofMillis(500).toNanos();
+
+    private int allowedOutOf(int requests) {
+        int allowed = 0;
+        for (int i = 0; i < requests; i++) {
+            if (breaker.allowRequest()) {
+                allowed++;
+            }
+        }
+        return allowed;
+    }
+
+    private void openBreaker() {
+        for (int i = 0; i < 4; i++) {
+            breaker.onFailure();
+        }
+    }
+
+    @Test
+    @DisplayName("Should open when the share of failed or slow calls reaches the threshold")
+    void onFailureAndSlowCalls_ShouldOpenBreaker() {
+        // Given
+        breaker.onSuccess(FAST);
+        breaker.onSuccess(FAST);
+        breaker.onFailure();
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+
+        // When
+        breaker.onSuccess(SLOW);
+
+        // Then
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+        assertThat(breaker.allowRequest()).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should stay closed while most calls are fast and successful")
+    void onMostlySuccessfulCalls_ShouldStayClosed() {
+        // When
+        for (int i = 0; i < 50; i++) {
+            if (i % 5 == 0) {
+                breaker.onFailure();
+            } else {
+                breaker.onSuccess(FAST);
+            }
+        }
+
+        // Then
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    @DisplayName("Should let traffic back in gradually after the open period")
+    void halfOpen_WithGoodProbes_ShouldRampUpAndClose() {
+        // Given
+        openBreaker();
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+
+        // When & Then - 1 in 8, then 1 in 4, then 1 in 2, then everything
+        assertThat(allowedOutOf(8)).isEqualTo(1);
+        breaker.onSuccess(FAST);
+        assertThat(allowedOutOf(8)).isEqualTo(2);
+        breaker.onSuccess(FAST);
+        assertThat(allowedOutOf(8)).isEqualTo(4);
+        breaker.onSuccess(FAST);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.HALF_OPEN);
+        assertThat(allowedOutOf(8)).isEqualTo(8);
+        breaker.onSuccess(FAST);
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.CLOSED);
+    }
+
+    @Test
+    @DisplayName("Should open again when a probe fails")
+    void halfOpen_WithBadProbe_ShouldReopen() {
+        // Given
+        openBreaker();
+        clock.addAndGet(Duration.ofSeconds(10).toNanos());
+        assertThat(breaker.allowRequest()).isTrue();
+
+        // When
+        breaker.onSuccess(SLOW);
+
+        // Then
+        assertThat(breaker.getState()).isEqualTo(CircuitBreaker.State.OPEN);
+    }
+}
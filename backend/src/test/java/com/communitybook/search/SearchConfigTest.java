@@ -0,0 +1,29 @@
+package com.communitybook.search;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("SearchConfig Unit Tests")
+class SearchConfigTest {
+
+    @Test
+    @DisplayName("Should use full-text search on PostgreSQL only, unless a strategy is forced")
+    void shouldPickStrategyByDatabaseProduct() {
+        assertThat(SearchConfig.useFullText("auto", "PostgreSQL")).isTrue();
+        assertThat(SearchConfig.useFullText("auto", "H2")).isFalse();
+        assertThat(SearchConfig.useFullText("auto", null)).isFalse();
+        assertThat(SearchConfig.useFullText("full-text", "H2")).isTrue();
+        assertThat(SearchConfig.useFullText("like", "PostgreSQL")).isFalse();
+    }
+
+    @Test
+    @DisplayName("Should reject an unknown strategy")
+    void shouldRejectUnknownStrategy() {
+        assertThatThrownBy(() -> SearchConfig.useFullText("elastic", "PostgreSQL"))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("app.search.strategy");
+    }
+}
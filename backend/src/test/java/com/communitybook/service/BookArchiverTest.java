@@ -0,0 +1,126 @@
+package com.communitybook.service;
+
+import com.communitybook.event.BookChangedEvent.ChangeType;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.extension.ExtendWith;
+import org.mockito.InjectMocks;
+import org.mockito.Mock;
+import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.dao.DataAccessResourceFailureException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.*;
+
+@ExtendWith(MockitoExtension.class)
+@DisplayName("BookArchiver Unit Tests")
+class BookArchiverTest {
+
+    private static final LocalDateTime CUTOFF = LocalDateTime.of(2025, 10, 19, 0, 0);
+
+    @Mock
+    private JdbcTemplate jdbcTemplate;
+
+    @Mock
+    private BookService bookService;
+
+    @InjectMocks
+    private BookArchiver bookArchiver;
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(bookArchiver, "enabled", true);
+        ReflectionTestUtils.setField(bookArchiver, "maxAge", Duration.ofDays(365));
+        ReflectionTestUtils.setField(bookArchiver, "batchSize", 2);
+        ReflectionTestUtils.setField(bookArchiver, "batchPause", Duration.ZERO);
+    }
+
+    @Test
+    @DisplayName("Should move batches until one comes back short, reporting every moved id")
+    void archiveCreatedBefore_ShouldPublishArchivedPerMovedId() {
+        // Given
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), eq(Timestamp.valueOf(CUTOFF)), eq(2)))
+                .thenReturn(List.of(1L, 2L))
+                .thenReturn(List.of(3L, 4L))
+                .thenReturn(List.of(5L));
+
+        // When
+        int moved = bookArchiver.archiveCreatedBefore(CUTOFF);
+
+        // Then
+        assertThat(moved).isEqualTo(5);
+        verify(jdbcTemplate, times(3)).queryForList(anyString(), eq(Long.class), any(), any());
+        for (long id = 1; id <= 5; id++) {
+            verify(bookService).publishChange(id, ChangeType.ARCHIVED);
+        }
+        verifyNoMoreInteractions(bookService);
+    }
+
+    @Test
+    @DisplayName("Should not publish anything when no listing is old enough")
+    void archiveCreatedBefore_WithNothingToMove_ShouldNotPublish() {
+        // Given
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any(), any())).thenReturn(List.of());
+
+        // When
+        int moved = bookArchiver.archiveCreatedBefore(CUTOFF);
+
+        // Then
+        assertThat(moved).isZero();
+        verifyNoInteractions(bookService);
+    }
+
+    @Test
+    @DisplayName("Should report the batches already moved when a later batch fails")
+    void archiveCreatedBefore_WhenBatchFails_ShouldKeepEarlierEvents() {
+        // Given
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any(), any()))
+                .thenReturn(List.of(1L, 2L))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"));
+
+        // When & Then
+        assertThatThrownBy(() -> bookArchiver.archiveCreatedBefore(CUTOFF))
+                .isInstanceOf(DataAccessResourceFailureException.class);
+        verify(bookService).publishChange(1L, ChangeType.ARCHIVED);
+        verify(bookService).publishChange(2L, ChangeType.ARCHIVED);
+        verifyNoMoreInteractions(bookService);
+    }
+
+    @Test
+    @DisplayName("Should swallow failures in the scheduled run so the next run can retry")
+    void archiveAgedListings_WhenDatabaseFails_ShouldNotThrow() {
+        // Given
+        when(jdbcTemplate.queryForList(anyString(), eq(Long.class), any(), any()))
+                .thenThrow(new DataAccessResourceFailureException("connection lost"));
+
+        // When
+        bookArchiver.archiveAgedListings();
+
+        // Then
+        verifyNoInteractions(bookService);
+    }
+
+    @Test
+    @DisplayName("Should do nothing when archiving is disabled")
+    void archiveAgedListings_WhenDisabled_ShouldNotQuery() {
+        // Given
+        ReflectionTestUtils.setField(bookArchiver, "enabled", false);
+
+        // When
+        bookArchiver.archiveAgedListings();
+
+        // Then
+        verifyNoInteractions(jdbcTemplate, bookService);
+    }
+}
@@ -1,24 +1,39 @@
 package com.communitybook.service;
 
+import com.communitybook.event.BookChangedEvent;
+import com.communitybook.event.BookChangedEvent.ChangeType;
+import com.communitybook.lookup.BookLookupResult;
+import com.communitybook.lookup.BookSummary;
+import com.communitybook.lookup.BookSummaryCache;
 import com.communitybook.model.Book;
 import com.communitybook.model.BookType;
 import com.communitybook.repository.BookRepository;
+import com.communitybook.search.BookSearch;
+import com.communitybook.similarity.SimilarListings;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.DisplayName;
 import org.junit.jupiter.api.Test;
 import org.junit.jupiter.api.extension.ExtendWith;
 import org.mockito.InjectMocks;
 import org.mockito.Mock;
+import org.mockito.Spy;
 import org.mockito.junit.jupiter.MockitoExtension;
+import org.springframework.context.ApplicationEventPublisher;
 
 import java.math.BigDecimal;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
 
 import static org.assertj.core.api.Assertions.assertThat;
 import static org.assertj.core.api.Assertions.assertThatThrownBy;
 import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
 import static org.mockito.Mockito.*;
 
 @ExtendWith(MockitoExtension.class)
@@ -28,6 +43,21 @@ class BookServiceMinimalTest {
     @Mock
     private BookRepository bookRepository;
 
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+
+    @Mock
+    private BookSearch bookSearch;
+
+    @Mock
+    private SimilarListings similarListings;
+
+    @Spy
+    private CatalogVersion catalogVersion = new CatalogVersion();
+
+    @Spy
+    private BookSummaryCache bookSummaryCache = new BookSummaryCache(100);
+
     @InjectMocks
     private BookService bookService;
 
@@ -92,6 +122,21 @@ class BookServiceMinimalTest {
         verify(bookRepository).save(testBook);
     }
 
+    @Test
+    @DisplayName("Should bump the catalog version and publish a change event when a book is saved")
+    void saveBook_ShouldPublishChangeWithNewVersion() {
+        // Given
+        when(bookRepository.save(any(Book.class))).thenReturn(testBook);
+
+        // When
+        bookService.saveBook(testBook);
+
+        // Then
+        assertThat(catalogVersion.current()).isEqualTo(1);
+        verify(eventPublisher).publishEvent(argThat((Object event) -> event instanceof BookChangedEvent changed
+                && changed.getBookId().equals(1L) && changed.getVersion() == 1));
+    }
+
     @Test
     @DisplayName("Should throw exception when updateBook is called with non-existing ID")
     void updateBook_WhenBookDoesNotExist_ShouldThrowException() {
@@ -116,4 +161,120 @@ class BookServiceMinimalTest {
         verify(bookRepository).findById(999L);
         verify(bookRepository, never()).save(any(Book.class));
     }
+
+    @Test
+    @DisplayName("Should not let readers join a lookup that started before a change made on another node")
+    void getBookById_AfterRemoteChange_ShouldNotJoinEarlierLookup() throws Exception {
+        // Given - a lookup of book 1 is still reading the old row
+        Book updated = book(1L, "Updated Title");
+        CountDownLatch loading = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        when(bookRepository.findById(1L))
+                .thenAnswer(invocation -> {
+                    loading.countDown();
+                    release.await(5, TimeUnit.SECONDS);
+                    return Optional.of(testBook);
+                })
+                .thenReturn(Optional.of(updated));
+        CompletableFuture<Optional<Book>> earlier = CompletableFuture.supplyAsync(() -> bookService.getBookById(1L));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // When
+        bookService.onBookChanged(new BookChangedEvent(1L, ChangeType.INVALIDATED, 1, true));
+        Optional<Book> later = bookService.getBookById(1L);
+        release.countDown();
+
+        // Then
+        assertThat(later).contains(updated);
+        assertThat(earlier.get(5, TimeUnit.SECONDS)).contains(testBook);
+        verify(bookRepository, times(2)).findById(1L);
+    }
+
+    @Test
+    @DisplayName("Should look up many books with one query, in request order, and report missing ids")
+    void lookupBooks_ShouldLoadOnceAndReportMissingIds() {
+        // Given
+        when(bookRepository.findSummariesByIds(List.of(3L, 1L, 7L)))
+                .thenReturn(List.of(summary(1L), summary(3L)));
+
+        // When
+        BookLookupResult first = bookService.lookupBooks(Arrays.asList(3L, 1L, 3L, null, 7L));
+        BookLookupResult second = bookService.lookupBooks(List.of(1L, 3L));
+
+        // Then
+        assertThat(first.getBooks()).extracting(BookSummary::getId).containsExactly(3L, 1L);
+        assertThat(first.getMissingIds()).containsExactly(7L);
+        // The second lookup is answered from the cache
+        assertThat(second.getBooks()).extracting(BookSummary::getId).containsExactly(1L, 3L);
+        assertThat(second.getMissingIds()).isEmpty();
+        verify(bookRepository, times(1)).findSummariesByIds(any());
+    }
+
+    @Test
+    @DisplayName("Should reject empty and oversized id lists")
+    void lookupBooks_WithTooFewOrTooManyIds_ShouldThrowException() {
+        List<Long> tooMany = new ArrayList<>();
+        for (long id = 1; id <= BookService.MAX_LOOKUP_IDS + 1; id++) {
+            tooMany.add(id);
+        }
+
+        assertThatThrownBy(() -> bookService.lookupBooks(Collections.emptyList()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> bookService.lookupBooks(tooMany))
+                .isInstanceOf(IllegalArgumentException.class)
+                .hasMessageContaining("At most");
+        verify(bookRepository, never()).findSummariesByIds(any());
+    }
+
+    @Test
+    @DisplayName("Should keep the search ranking over live and archived listings and return each listing once")
+    void searchBooks_IncludingArchived_ShouldKeepRankingAndDropDuplicates() {
+        // Given: an archived exact match ranked first, and a listing read from both tables while it moved
+        Book archivedMatch = book(2L, "Dune");
+        Book liveMatch = book(1L, "Dune Messiah");
+        Book movedLive = book(3L, "Children of Dune");
+        Book movedArchived = book(3L, "Children of Dune");
+        when(bookSearch.searchIncludingArchived("dune"))
+                .thenReturn(List.of(archivedMatch, liveMatch, movedLive, movedArchived));
+
+        // When
+        List<Book> books = bookService.searchBooks("dune", true);
+
+        // Then
+        assertThat(books).containsExactly(archivedMatch, liveMatch, movedLive);
+        verify(bookSearch, never()).search(any());
+    }
+
+    @Test
+    @DisplayName("Should check that the book exists without loading it before finding similar books")
+    void getSimilarBooks_ShouldOnlyCheckExistence() {
+        // Given
+        Book similar = book(2L, "Similar Book");
+        when(bookRepository.existsById(1L)).thenReturn(true);
+        when(bookRepository.existsById(999L)).thenReturn(false);
+        when(similarListings.similarTo(1L, 5)).thenReturn(new long[] {2L});
+        when(bookRepository.findAllById(List.of(2L))).thenReturn(List.of(similar));
+
+        // When
+        Optional<List<Book>> found = bookService.getSimilarBooks(1L, 5);
+        Optional<List<Book>> missing = bookService.getSimilarBooks(999L, 5);
+
+        // Then
+        assertThat(found).contains(List.of(similar));
+        assertThat(missing).isEmpty();
+        verify(bookRepository, never()).findById(any());
+        verify(similarListings, never()).similarTo(eq(999L), anyInt());
+    }
+
+    private static BookSummary summary(Long id) {
+        return new BookSummary(id, "Book " + id, "Author", new BigDecimal("5.00"), "/v1/books/" + id + "/photo",
+                BookType.SELL, null, "Owner", "EMAIL", "owner@example.com", null, null);
+    }
+
+    private static Book book(Long id, String title) {
+        Book book = new Book();
+        book.setId(id);
+        book.setTitle(title);
+        return book;
+    }
 }
@@ -0,0 +1,109 @@
+package com.communitybook.service;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+@DisplayName("SingleFlight Unit Tests")
+class SingleFlightTest {
+
+    private final SingleFlight<Long, String> singleFlight = new SingleFlight<>("test");
+    private final ExecutorService executor = Executors.newFixedThreadPool(8);
+
+    @AfterEach
+    void tearDown() {
+        executor.shutdownNow();
+    }
+
+    // Starts the given number of callers for the same key while the first execution is held open
+    private List<Future<String>> callConcurrently(int callers, CountDownLatch release, RuntimeException failure)
+            throws Exception {
+        AtomicInteger executions = new AtomicInteger();
+        CountDownLatch leaderStarted = new CountDownLatch(1);
+        List<Future<String>> results = new ArrayList<>();
+        results.add(executor.submit(() -> singleFlight.execute(1L, () -> {
+            executions.incrementAndGet();
+            leaderStarted.countDown();
+            await(release);
+            if (failure != null) {
+                throw failure;
+            }
+            return "book-1";
+        })));
+        leaderStarted.await(5, TimeUnit.SECONDS);
+        for (int i = 1; i < callers; i++) {
+            results.add(executor.submit(() -> singleFlight.execute(1L, () -> {
+                executions.incrementAndGet();
+                return "unexpected";
+            })));
+        }
+        // Give the followers time to join the in-flight call before it completes
+        while (singleFlight.getCoalescedCount() < callers - 1) {
+            Thread.sleep(5);
+        }
+        release.countDown();
+        assertThat(executions.get()).isEqualTo(1);
+        return results;
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Test
+    @DisplayName("Should share one execution between concurrent callers for the same key")
+    void execute_WithConcurrentCallers_ShouldRunLoaderOnce() throws Exception {
+        // When
+        List<Future<String>> results = callConcurrently(5, new CountDownLatch(1), null);
+
+        // Then
+        for (Future<String> result : results) {
+            assertThat(result.get(5, TimeUnit.SECONDS)).isEqualTo("book-1");
+        }
+        assertThat(singleFlight.getExecutedCount()).isEqualTo(1);
+        assertThat(singleFlight.getCoalescedCount()).isEqualTo(4);
+    }
+
+    @Test
+    @DisplayName("Should hand the leader's exception to every waiting caller")
+    void execute_WhenLoaderFails_ShouldPropagateToAllCallers() throws Exception {
+        // Given
+        IllegalStateException failure = new IllegalStateException("pool exhausted");
+
+        // When
+        List<Future<String>> results = callConcurrently(3, new CountDownLatch(1), failure);
+
+        // Then
+        for (Future<String> result : results) {
+            assertThatThrownBy(() -> result.get(5, TimeUnit.SECONDS)).hasCause(failure);
+        }
+    }
+
+    @Test
+    @DisplayName("Should run the loader again once the previous call has finished")
+    void execute_AfterCompletion_ShouldNotCacheResult() {
+        // When
+        singleFlight.execute(1L, () -> "first");
+        String second = singleFlight.execute(1L, () -> "second");
+
+        // Then
+        assertThat(second).isEqualTo("second");
+        assertThat(singleFlight.getExecutedCount()).isEqualTo(2);
+    }
+}
@@ -0,0 +1,127 @@
+package com.communitybook.similarity;
+
+import com.communitybook.event.BookChangedEvent;
+import com.communitybook.event.BookChangedEvent.ChangeType;
+import com.communitybook.repository.BookRepository;
+import com.communitybook.repository.BookTextRow;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.*;
+
+@DisplayName("SimilarListings Unit Tests - Index Lifecycle")
+class SimilarListingsTest {
+
+    private static final BookTextRow DUNE = row(1, "Dune", "Frank Herbert", "Desert planet, spice and sandworms");
+    private static final BookTextRow DUNE_AGAIN = row(2, "Dune", "Frank Herbert", "Desert planet, spice and sandworms");
+
+    private final BookRepository bookRepository = mock(BookRepository.class);
+    private final SimilarListings similarListings = new SimilarListings(16, 2);
+
+    // Lets a test hold the background rebuild inside the table read
+    private final CountDownLatch loading = new CountDownLatch(1);
+    private final CountDownLatch release = new CountDownLatch(1);
+
+    @BeforeEach
+    void setUp() {
+        ReflectionTestUtils.setField(similarListings, "bookRepository", bookRepository);
+        when(bookRepository.findTextRowsByIds(anyCollection())).thenReturn(List.of(DUNE, DUNE_AGAIN));
+    }
+
+    @AfterEach
+    void tearDown() {
+        release.countDown();
+        similarListings.shutdown();
+    }
+
+    @Test
+    @DisplayName("Should keep answering from the old index while it is rebuilt in the background")
+    void similarTo_DuringRebuild_ShouldUseOldIndex() throws Exception {
+        // Given
+        when(bookRepository.findAllTextRows())
+                .thenReturn(List.of(DUNE, DUNE_AGAIN))
+                .thenAnswer(invocation -> blockThenReturn(DUNE));
+        similarListings.buildAtStartup();
+
+        // When
+        similarListings.onBookChanged(BookChangedEvent.fullInvalidation(1));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+        long[] whileRebuilding = similarListings.similarTo(1, 5);
+        release.countDown();
+
+        // Then
+        assertThat(whileRebuilding).containsExactly(2L);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (similarListings.similarTo(1, 5).length > 0 && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(similarListings.similarTo(1, 5)).isEmpty();
+    }
+
+    @Test
+    @DisplayName("Should apply a change without waiting for a rebuild, and replay it onto the new index")
+    void onBookChanged_DuringRebuild_ShouldNotWaitAndBeReplayed() throws Exception {
+        // Given
+        when(bookRepository.findAllTextRows())
+                .thenReturn(List.of(DUNE))
+                .thenAnswer(invocation -> blockThenReturn(DUNE));
+        when(bookRepository.findTextRowById(2L)).thenReturn(Optional.of(DUNE_AGAIN));
+        similarListings.buildAtStartup();
+        similarListings.onBookChanged(BookChangedEvent.fullInvalidation(1));
+        assertThat(loading.await(5, TimeUnit.SECONDS)).isTrue();
+
+        // When - listing 2 is created while the rebuild is still reading the table
+        similarListings.onBookChanged(new BookChangedEvent(2L, ChangeType.CREATED, 2));
+        long[] beforeSwap = similarListings.similarTo(1, 5);
+        release.countDown();
+
+        // Then - once by the event, once more when the rebuild replays it
+        assertThat(beforeSwap).containsExactly(2L);
+        verify(bookRepository, timeout(5000).times(2)).findTextRowById(2L);
+        long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (ReflectionTestUtils.getField(similarListings, "changedDuringRebuild") != null
+                && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(similarListings.similarTo(1, 5)).containsExactly(2L);
+    }
+
+    @Test
+    @DisplayName("Should answer with no similar listings and build in the background before the first build")
+    void similarTo_BeforeFirstBuild_ShouldNotBuildOnRequestThread() {
+        // Given
+        when(bookRepository.findAllTextRows()).thenReturn(List.of(DUNE, DUNE_AGAIN));
+
+        // When
+        long[] similar = similarListings.similarTo(1, 5);
+
+        // Then
+        assertThat(similar).isEmpty();
+        verify(bookRepository, timeout(5000)).findAllTextRows();
+    }
+
+    private List<BookTextRow> blockThenReturn(BookTextRow... rows) throws InterruptedException {
+        loading.countDown();
+        release.await(5, TimeUnit.SECONDS);
+        return List.of(rows);
+    }
+
+    private static BookTextRow row(long id, String title, String author, String description) {
+        return new BookTextRow() {
+            public Long getId() { return id; }
+            public String getTitle() { return title; }
+            public String getAuthor() { return author; }
+            public String getDescription() { return description; }
+        };
+    }
+}
@@ -0,0 +1,161 @@
+package com.communitybook.similarity;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.condition.EnabledIfSystemProperty;
+
+import java.util.Arrays;
+import java.util.SplittableRandom;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// Recall and latency of the similarity index at catalog scale. Not part of the normal build, run with
+//   mvn test -Dtest=SimilarityIndexBenchmarkTest -Dbenchmark=true -DargLine=-Xmx3g
+// (-Dbenchmark.listings=... to change the catalog size, default 1,000,000)
+//
+// The synthetic catalog mixes unrelated listings with families of re-posted / re-worded copies of the same
+// book. Recall is measured against a brute-force exact Jaccard scan: of the true top 10 neighbours with
+// similarity >= 0.3, how many does the index return in its top 10.
+@EnabledIfSystemProperty(named = "benchmark", matches = "true")
+@DisplayName("SimilarityIndex Benchmark")
+class SimilarityIndexBenchmarkTest {
+
+    private static final int LIMIT = 10;
+    private static final double RELEVANT = 0.3;
+    private static final int WARMUP_QUERIES = 2_000;
+    private static final int TIMED_QUERIES = 5_000;
+    // Each recall query is a full scan of the catalog, so keep these few
+    private static final int RECALL_QUERIES = 100;
+    private static final int VOCABULARY = 30_000;
+
+    @Test
+    @DisplayName("Should keep recall high and lookups fast at 1M listings")
+    void recallAndLatencyAtScale() {
+        int listings = Integer.getInteger("benchmark.listings", 1_000_000);
+        SplittableRandom random = new SplittableRandom(7);
+        long[][] shingles = new long[listings + 1][];
+
+        long buildStart = System.nanoTime();
+        SimilarityIndex index = new SimilarityIndex(16, 2, listings);
+        String[] base = null;
+        for (int id = 1; id <= listings; id++) {
+            // Roughly half of the listings start a new book, the rest are variations of the previous one
+            if (base == null || random.nextInt(2) == 0) {
+                base = randomListing(random);
+            }
+            String[] listing = vary(base, random);
+            shingles[id] = Shingles.of(listing[0], listing[1], listing[2]);
+            index.put(id, shingles[id]);
+        }
+        long buildMillis = (System.nanoTime() - buildStart) / 1_000_000;
+
+        for (int q = 0; q < WARMUP_QUERIES; q++) {
+            similar(index, shingles, 1 + random.nextInt(listings));
+        }
+        long[] latencies = new long[TIMED_QUERIES];
+        for (int q = 0; q < TIMED_QUERIES; q++) {
+            int id = 1 + random.nextInt(listings);
+            long start = System.nanoTime();
+            similar(index, shingles, id);
+            latencies[q] = System.nanoTime() - start;
+        }
+
+        double recallSum = 0;
+        int measured = 0;
+        for (int q = 0; q < RECALL_QUERIES; q++) {
+            int id = 1 + random.nextInt(listings);
+            long[] found = similar(index, shingles, id);
+            long[] expected = bruteForce(shingles, id);
+            if (expected.length > 0) {
+                int hits = 0;
+                for (long e : expected) {
+                    for (long f : found) {
+                        if (e == f) {
+                            hits++;
+                            break;
+                        }
+                    }
+                }
+                recallSum += (double) hits / expected.length;
+                measured++;
+            }
+        }
+        Arrays.sort(latencies);
+        double recall = recallSum / Math.max(1, measured);
+        System.out.printf("listings=%d build=%d ms index=%.1f MB (%.0f B/listing) recall@%d=%.3f over %d queries "
+                        + "p50=%.1f us p99=%.1f us%n",
+                listings, buildMillis, index.estimatedBytes() / 1e6, (double) index.estimatedBytes() / listings,
+                LIMIT, recall, measured, latencies[TIMED_QUERIES / 2] / 1e3, latencies[TIMED_QUERIES * 99 / 100] / 1e3);
+
+        assertThat(recall).isGreaterThan(0.9);
+    }
+
+    // What SimilarListings does, with the shingles held in memory instead of loaded from the database
+    private static long[] similar(SimilarityIndex index, long[][] shingles, int id) {
+        long[] candidates = index.candidates(id, 50);
+        return SimilarityIndex.rerank(shingles[id], candidates, c -> shingles[(int) c], LIMIT, 0.05);
+    }
+
+    // True top neighbours above the relevance threshold, by exact Jaccard over the whole catalog
+    private static long[] bruteForce(long[][] shingles, int query) {
+        long[] best = new long[0];
+        double[] bestScores = new double[0];
+        for (int id = 1; id < shingles.length; id++) {
+            if (id == query) {
+                continue;
+            }
+            double score = Shingles.jaccard(shingles[query], shingles[id]);
+            if (score < RELEVANT) {
+                continue;
+            }
+            int at = bestScores.length;
+            while (at > 0 && bestScores[at - 1] < score) {
+                at--;
+            }
+            if (at >= LIMIT) {
+                continue;
+            }
+            int size = Math.min(LIMIT, bestScores.length + 1);
+            long[] ids = new long[size];
+            double[] scores = new double[size];
+            System.arraycopy(best, 0, ids, 0, at);
+            System.arraycopy(bestScores, 0, scores, 0, at);
+            ids[at] = id;
+            scores[at] = score;
+            System.arraycopy(best, at, ids, at + 1, size - at - 1);
+            System.arraycopy(bestScores, at, scores, at + 1, size - at - 1);
+            best = ids;
+            bestScores = scores;
+        }
+        return best;
+    }
+
+    private static String[] randomListing(SplittableRandom random) {
+        return new String[] {words(random, 2 + random.nextInt(4)), words(random, 2), words(random, 10 + random.nextInt(30))};
+    }
+
+    // Re-posts keep the book but reword part of the description
+    private static String[] vary(String[] base, SplittableRandom random) {
+        String[] words = base[2].split(" ");
+        for (int i = 0; i < words.length; i++) {
+            if (random.nextInt(5) == 0) {
+                words[i] = word(random);
+            }
+        }
+        return new String[] {base[0], base[1], String.join(" ", words)};
+    }
+
+    private static String words(SplittableRandom random, int count) {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < count; i++) {
+            text.append(i == 0 ? "" : " ").append(word(random));
+        }
+        return text.toString();
+    }
+
+    // Skewed towards common words, like real descriptions
+    private static String word(SplittableRandom random) {
+        double u = random.nextDouble();
+        return "w" + (int) (VOCABULARY * u * u * u);
+    }
+}
@@ -0,0 +1,81 @@
+package com.communitybook.similarity;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("SimilarityIndex Unit Tests")
+class SimilarityIndexTest {
+
+    private final Map<Long, long[]> texts = new HashMap<>();
+    private final SimilarityIndex index = new SimilarityIndex(16, 2);
+
+    @Test
+    @DisplayName("Should find near-duplicate listings and rank them by exact similarity")
+    void shouldFindAndRankSimilarListings() {
+        // Given
+        add(1, "The Hobbit", "J.R.R. Tolkien", "Paperback edition, good condition, some pencil notes inside");
+        add(2, "The Hobbit", "J.R.R. Tolkien", "Paperback edition, good condition");
+        add(3, "The Hobbit illustrated", "J.R.R. Tolkien", "Hardcover edition, good condition, some pencil notes inside");
+        add(4, "Pride and Prejudice", "Jane Austen", "Classic novel, like new, never read");
+        add(5, "Linear Algebra Done Right", "Sheldon Axler", "Textbook for MATH 221, highlighted");
+
+        // When
+        long[] candidates = index.candidates(1, 50);
+        long[] similar = SimilarityIndex.rerank(texts.get(1L), candidates, texts::get, 10, 0.05);
+
+        // Then
+        assertThat(candidates).contains(2L, 3L).doesNotContain(1L);
+        assertThat(similar).startsWith(3L, 2L);
+        assertThat(similar).doesNotContain(4L, 5L);
+    }
+
+    @Test
+    @DisplayName("Should forget removed and replaced listings")
+    void shouldForgetRemovedAndReplacedListings() {
+        // Given
+        add(1, "Dune", "Frank Herbert", "Science fiction classic, first book of the series");
+        add(2, "Dune", "Frank Herbert", "Science fiction classic, first book of the series, paperback");
+        add(3, "Dune", "Frank Herbert", "Science fiction classic, first book of the series, hardcover");
+
+        // When
+        index.remove(2);
+        add(3, "Calculus", "James Stewart", "Early transcendentals, 8th edition");
+
+        // Then
+        assertThat(index.contains(2)).isFalse();
+        assertThat(index.candidates(1, 10)).doesNotContain(2L, 3L);
+        assertThat(index.size()).isEqualTo(2);
+    }
+
+    @Test
+    @DisplayName("Should keep all live listings findable across growth and compaction")
+    void shouldSurviveGrowthAndCompaction() {
+        // Given
+        for (long id = 1; id <= 5000; id++) {
+            add(id, "Book " + (id / 2), "Author " + (id / 2), "Shared description for pair " + (id / 2));
+        }
+        // When
+        for (long id = 1; id <= 5000; id += 2) {
+            index.remove(id);
+        }
+        for (long id = 5001; id <= 6000; id++) {
+            add(id, "Book " + (id / 2), "Author " + (id / 2), "Shared description for pair " + (id / 2));
+        }
+
+        // Then
+        assertThat(index.size()).isEqualTo(3500);
+        assertThat(index.contains(4999)).isFalse();
+        assertThat(index.candidates(5002, 5)).contains(5003L);
+    }
+
+    private void add(long id, String title, String author, String description) {
+        long[] shingles = Shingles.of(title, author, description);
+        texts.put(id, shingles);
+        index.put(id, shingles);
+    }
+}
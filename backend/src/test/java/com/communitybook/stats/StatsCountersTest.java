@@ -0,0 +1,138 @@
+package com.communitybook.stats;
+
+import com.communitybook.model.BookType;
+import com.communitybook.repository.BookBrowseRow;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.assertj.core.api.Assertions.within;
+
+@DisplayName("StatsCounters Unit Tests")
+class StatsCountersTest {
+
+    private static final LocalDate TODAY = LocalDate.of(2026, 10, 19);
+
+    @Test
+    @DisplayName("Should count listings per type and day, and price only the ones for sale")
+    void shouldCountPerTypeAndDay() {
+        // Given
+        StatsCounters counters = StatsCounters.of(List.of(
+                row(1, "Tolkien", BookType.SELL, "10.00", TODAY),
+                row(2, "Austen", BookType.SELL, "30.00", TODAY.minusDays(1)),
+                row(3, "Tolkien", BookType.GIVEAWAY, null, TODAY),
+                row(4, "Tolkien", BookType.SELL, "20.00", TODAY.minusDays(40))));
+
+        // When
+        BookStats stats = counters.snapshot(TODAY, 7, 10);
+
+        // Then
+        assertThat(stats.getTotalListings()).isEqualTo(4);
+        assertThat(stats.getListingsByType()).containsEntry(BookType.SELL, 3L).containsEntry(BookType.GIVEAWAY, 1L);
+        assertThat(stats.getNewListingsPerDay()).hasSize(7)
+                .containsEntry(TODAY.toString(), 2L)
+                .containsEntry(TODAY.minusDays(1).toString(), 1L)
+                .containsEntry(TODAY.minusDays(6).toString(), 0L);
+        assertThat(stats.getAverageSellPrice()).isEqualByComparingTo("20.00");
+        assertThat(stats.getMedianSellPrice().doubleValue()).isCloseTo(20.0, within(0.2));
+        assertThat(stats.getTopAuthors()).extracting(BookStats.AuthorCount::getAuthor).containsExactly("Tolkien", "Austen");
+        assertThat(stats.getTopAuthors().get(0).getCount()).isEqualTo(3);
+    }
+
+    @Test
+    @DisplayName("Should subtract what a listing contributed before when it is updated or removed")
+    void shouldReplaceContributionsOnUpdateAndRemove() {
+        // Given
+        StatsCounters counters = new StatsCounters(0);
+        counters.put(row(1, "Tolkien", BookType.SELL, "10.00", TODAY));
+        counters.put(row(2, "Austen", BookType.SELL, "30.00", TODAY));
+
+        // When
+        counters.put(row(1, "tolkien ", BookType.GIVEAWAY, null, TODAY.minusDays(1)));
+        counters.remove(2);
+        counters.remove(99);
+
+        // Then
+        BookStats stats = counters.snapshot(TODAY, 2, 10);
+        assertThat(stats.getTotalListings()).isEqualTo(1);
+        assertThat(stats.getListingsByType()).containsEntry(BookType.SELL, 0L).containsEntry(BookType.GIVEAWAY, 1L);
+        assertThat(stats.getNewListingsPerDay()).containsEntry(TODAY.toString(), 0L)
+                .containsEntry(TODAY.minusDays(1).toString(), 1L);
+        assertThat(stats.getAverageSellPrice()).isNull();
+        assertThat(stats.getMedianSellPrice()).isNull();
+        assertThat(stats.getTopAuthors()).extracting(BookStats.AuthorCount::getCount).containsExactly(1L);
+    }
+
+    @Test
+    @DisplayName("Should keep the median within 1% and find the top authors among many listings")
+    void shouldEstimateMedianAndTopAuthors() {
+        // Given
+        List<BookBrowseRow> rows = new ArrayList<>();
+        for (int id = 1; id <= 20_000; id++) {
+            // Prices 1.00 .. 200.00; authors: a few prolific ones among thousands of one-offs
+            String price = BigDecimal.valueOf(100 + (id * 7919L) % 19_901, 2).toPlainString();
+            String author = id % 10 == 0 ? "Prolific " + (id % 30) : "Author " + id;
+            rows.add(row(id, author, BookType.SELL, price, TODAY));
+        }
+        StatsCounters counters = new StatsCounters(0);
+        for (BookBrowseRow row : rows) {
+            counters.put(row);
+        }
+
+        // When
+        BookStats stats = counters.snapshot(TODAY, 1, 3);
+
+        // Then
+        double exactMedian = rows.stream().map(BookBrowseRow::getPrice).sorted()
+                .skip((rows.size() - 1) / 2).findFirst().orElseThrow().doubleValue();
+        assertThat(stats.getMedianSellPrice().doubleValue()).isCloseTo(exactMedian, within(exactMedian * 0.01));
+        assertThat(stats.getTopAuthors()).extracting(BookStats.AuthorCount::getAuthor)
+                .containsExactlyInAnyOrder("Prolific 0", "Prolific 10", "Prolific 20");
+    }
+
+    @Test
+    @DisplayName("Should count small authors exactly among many one-off authors")
+    void shouldCountSmallAuthorsExactly() {
+        // Given - 200,000 one-off authors, plus a few with 2 to 6 listings
+        StatsCounters counters = new StatsCounters(0);
+        long id = 1;
+        for (int i = 0; i < 200_000; i++) {
+            counters.put(row(id++, "One-off " + i, BookType.GIVEAWAY, null, TODAY));
+        }
+        for (int books = 2; books <= 6; books++) {
+            for (int i = 0; i < books; i++) {
+                counters.put(row(id++, "Small " + books, BookType.SELL, "5.00", TODAY));
+            }
+        }
+        counters.remove(id - 1);
+
+        // When
+        BookStats stats = counters.snapshot(TODAY, 1, 5);
+
+        // Then
+        assertThat(stats.getTopAuthors()).extracting(BookStats.AuthorCount::getAuthor, BookStats.AuthorCount::getCount)
+                .containsExactly(
+                        tuple("Small 5", 5L),
+                        tuple("Small 6", 5L),
+                        tuple("Small 4", 4L),
+                        tuple("Small 3", 3L),
+                        tuple("Small 2", 2L));
+    }
+
+    private static BookBrowseRow row(long id, String author, BookType type, String price, LocalDate day) {
+        return new BookBrowseRow() {
+            public Long getId() { return id; }
+            public String getAuthor() { return author; }
+            public BigDecimal getPrice() { return price == null ? null : new BigDecimal(price); }
+            public BookType getType() { return type; }
+            public LocalDateTime getCreatedAt() { return day.atTime(12, 0); }
+        };
+    }
+}
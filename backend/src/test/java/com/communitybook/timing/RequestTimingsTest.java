@@ -0,0 +1,93 @@
+package com.communitybook.timing;
+
+import com.communitybook.timing.RequestTimings.Phase;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("RequestTimings Unit Tests")
+class RequestTimingsTest {
+
+    private final RequestTimings timings = RequestTimings.current();
+
+    @AfterEach
+    void tearDown() {
+        timings.stop();
+    }
+
+    @Test
+    @DisplayName("Should ignore phases recorded outside of a request")
+    void shouldIgnorePhasesOutsideOfRequest() {
+        // Given: totals of an earlier request on this thread are kept until the next start()
+        long before = timings.total(Phase.SQL);
+
+        // When
+        timings.begin(Phase.SQL);
+        timings.end(Phase.SQL);
+
+        // Then
+        assertThat(timings.isActive()).isFalse();
+        assertThat(timings.total(Phase.SQL)).isEqualTo(before);
+    }
+
+    @Test
+    @DisplayName("Should count only the outermost of nested begin/end pairs")
+    void shouldCountOutermostNestedPair() throws InterruptedException {
+        // Given
+        timings.start();
+
+        // When
+        timings.begin(Phase.REPOSITORY);
+        timings.begin(Phase.REPOSITORY);
+        Thread.sleep(5);
+        timings.end(Phase.REPOSITORY);
+        long afterInner = timings.total(Phase.REPOSITORY);
+        timings.end(Phase.REPOSITORY);
+
+        // Then
+        assertThat(afterInner).isZero();
+        assertThat(timings.total(Phase.REPOSITORY)).isGreaterThanOrEqualTo(5_000_000L);
+    }
+
+    @Test
+    @DisplayName("Should format a Server-Timing header and reset between requests")
+    void shouldFormatHeaderAndReset() {
+        // Given
+        timings.start();
+        timings.begin(Phase.SQL);
+        timings.end(Phase.SQL);
+        timings.markHandlerEnd();
+        timings.markSerializeEnd();
+
+        // When
+        String header = timings.formatHeader(System.nanoTime(), true);
+
+        // Then
+        assertThat(header).matches("pool;dur=\\d+\\.\\d\\d, sql;dur=\\d+\\.\\d\\d, hydrate;dur=\\d+\\.\\d\\d, "
+                + "app;dur=\\d+\\.\\d\\d, serialize;dur=\\d+\\.\\d\\d, total;dur=\\d+\\.\\d\\d");
+
+        timings.start();
+        assertThat(timings.total(Phase.SQL)).isZero();
+        assertThat(timings.formatHeader(System.nanoTime(), false)).doesNotContain("serialize");
+    }
+
+    @Test
+    @DisplayName("Should not count time spent flushing to the socket as serialization")
+    void shouldExcludeFlushFromSerialize() throws InterruptedException {
+        // Given
+        timings.start();
+        timings.markHandlerEnd();
+
+        // When: a full buffer is sent to the socket while the body is being written
+        timings.begin(Phase.FLUSH);
+        Thread.sleep(20);
+        timings.end(Phase.FLUSH);
+        timings.markSerializeEnd();
+
+        // Then
+        assertThat(timings.total(Phase.FLUSH)).isGreaterThanOrEqualTo(20_000_000L);
+        assertThat(timings.serialize()).isLessThan(20_000_000L);
+    }
+}
@@ -0,0 +1,62 @@
+package com.communitybook.timing;
+
+import jakarta.servlet.http.HttpServletResponse;
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.ObjectProvider;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.io.OutputStream;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+
+@DisplayName("ServerTimingFilter Unit Tests")
+class ServerTimingFilterTest {
+
+    @SuppressWarnings("unchecked")
+    private final ServerTimingFilter filter = new ServerTimingFilter(true, true, mock(ObjectProvider.class));
+
+    @Test
+    @DisplayName("Should report serialization in the header when the body fits in the response buffer")
+    void shouldReportSerializeWhenBodyIsBuffered() throws Exception {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/books");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+
+        // When: the body is written and flushed the way message converters do
+        filter.doFilter(request, response, (req, res) -> {
+            RequestTimings.current().markHandlerEnd();
+            OutputStream body = res.getOutputStream();
+            body.write("[]".getBytes());
+            body.flush();
+            assertThat(res.isCommitted()).isFalse();
+        });
+
+        // Then
+        assertThat(response.getHeader(ServerTimingFilter.HEADER)).contains("app;dur=", "serialize;dur=", "total;dur=");
+        assertThat(response.isCommitted()).isTrue();
+        assertThat(response.getContentAsString()).isEqualTo("[]");
+    }
+
+    @Test
+    @DisplayName("Should keep the header set before the body once the response is committed mid-write")
+    void shouldKeepEarlyHeaderWhenCommittedMidWrite() throws Exception {
+        // Given
+        MockHttpServletRequest request = new MockHttpServletRequest("GET", "/api/v1/books");
+        MockHttpServletResponse response = new MockHttpServletResponse();
+        response.setBufferSize(4);
+
+        // When: the body overflows the buffer, as ServerTimingAdvice has already set the early header
+        filter.doFilter(request, response, (req, res) -> {
+            RequestTimings.current().markHandlerEnd();
+            ((HttpServletResponse) res).setHeader(ServerTimingFilter.HEADER, "app;dur=1.00");
+            res.getOutputStream().write("[{\"id\":1}]".getBytes());
+        });
+
+        // Then
+        assertThat(response.getHeader(ServerTimingFilter.HEADER)).isEqualTo("app;dur=1.00");
+        assertThat(response.getContentAsString()).isEqualTo("[{\"id\":1}]");
+    }
+}
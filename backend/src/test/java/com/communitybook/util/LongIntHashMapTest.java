@@ -0,0 +1,41 @@
+package com.communitybook.util;
+
+import org.junit.jupiter.api.DisplayName;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+@DisplayName("LongIntHashMap Unit Tests")
+class LongIntHashMapTest {
+
+    @Test
+    @DisplayName("Should behave like a map under random puts and removes")
+    void shouldMatchReferenceMap() {
+        // Given
+        LongIntHashMap map = new LongIntHashMap(4);
+        Map<Long, Integer> reference = new HashMap<>();
+        Random random = new Random(42);
+
+        // When
+        for (int i = 0; i < 100_000; i++) {
+            long key = 1 + random.nextInt(2000);
+            if (random.nextBoolean()) {
+                map.put(key, i);
+                reference.put(key, i);
+            } else {
+                Integer expected = reference.remove(key);
+                assertThat(map.remove(key)).isEqualTo(expected == null ? LongIntHashMap.MISSING : expected);
+            }
+        }
+
+        // Then
+        assertThat(map.size()).isEqualTo(reference.size());
+        for (long key = 1; key <= 2000; key++) {
+            assertThat(map.get(key)).isEqualTo(reference.getOrDefault(key, LongIntHashMap.MISSING));
+        }
+    }
+}
@@ -0,0 +1,18 @@
+-- Hands the schema objects to the backend's database user. The backend applies the Flyway migrations
+-- in backend/src/main/resources/db/migration at startup, and statements such as ALTER TABLE or
+-- CREATE INDEX can only be run by the owner of the table.
+--
+-- Run as a superuser (or the current owner of the tables):
+--   psql -d communitybook_db -v db_user=communitybook_user -f ownership.sql
+-- setup.sh runs it for new databases; upgrade.sh runs it for databases set up before the migrations.
+
+-- pg_trgm is created by migration V2 for the search indexes; creating it needs more rights than the backend's user may have
+CREATE EXTENSION IF NOT EXISTS pg_trgm;
+
+GRANT CREATE ON SCHEMA public TO :"db_user";
+
+-- Also moves the indexes and the sequences owned by the tables (books_id_seq)
+ALTER TABLE IF EXISTS books OWNER TO :"db_user";
+ALTER TABLE IF EXISTS books_archive OWNER TO :"db_user";
+ALTER SEQUENCE IF EXISTS catalog_version_seq OWNER TO :"db_user";
+ALTER TABLE IF EXISTS flyway_schema_history OWNER TO :"db_user";
@@ -11,28 +11,16 @@
 -- Use this database
 -- \c communitybook_db;
 
-CREATE TABLE IF NOT EXISTS books (
-    id BIGSERIAL PRIMARY KEY,
-    title VARCHAR(255) NOT NULL,
-    author VARCHAR(255) NOT NULL,
-    photo_url VARCHAR(500) NOT NULL,
-    photo_data BYTEA,
-    price DECIMAL(10,2),
-    type VARCHAR(20) NOT NULL CHECK (type IN ('SELL', 'GIVEAWAY')),
-    description TEXT,
-    owner_name VARCHAR(255) NOT NULL,
-    contact_method VARCHAR(10) NOT NULL CHECK (contact_method IN ('EMAIL', 'PHONE')),
-    contact_info VARCHAR(255) NOT NULL,
-    created_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP,
-    updated_at TIMESTAMP DEFAULT CURRENT_TIMESTAMP
-);
-
--- Create indexes for better performance
-CREATE INDEX IF NOT EXISTS idx_books_type ON books(type);
-CREATE INDEX IF NOT EXISTS idx_books_author ON books(author);
-CREATE INDEX IF NOT EXISTS idx_books_title ON books(title);
-CREATE INDEX IF NOT EXISTS idx_books_owner_name ON books(owner_name);
-CREATE INDEX IF NOT EXISTS idx_books_created_at ON books(created_at);
+-- The tables themselves are defined by the Flyway migrations in backend/src/main/resources/db/migration,
+-- which the backend applies at startup. This file runs the same migrations (so there is only one
+-- definition to keep up to date) and adds sample data: psql -d communitybook_db -f schema.sql
+-- A database created from it has no Flyway history yet; the backend baselines it at version 1 and
+-- re-applies the later migrations, which are written to be safe to run again.
+-- The backend's database user must own the tables (setup.sh takes care of it, see ownership.sql).
+
+\ir ../backend/src/main/resources/db/migration/V1__baseline.sql
+\ir ../backend/src/main/resources/db/migration/V2__archive_and_photo_hash.sql
+\ir ../backend/src/main/resources/db/migration/V3__search_indexes.sql
 
 -- Sample data (optional)
 INSERT INTO books (id, title, author, photo_url, price, type, description, owner_name, contact_method, contact_info)
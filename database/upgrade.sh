@@ -0,0 +1,28 @@
+#!/bin/bash
+
+# Community Book Exchange - Database Upgrade Script
+# Prepares a database created by an older setup.sh for the backend's schema migrations.
+# Those databases have their tables owned by the PostgreSQL superuser, so the first migration the backend
+# applies at startup fails with "must be owner of table books". Run this once before starting the
+# upgraded backend; running it again does no harm.
+
+echo "Upgrading Community Book Exchange Database..."
+
+if ! command -v psql &> /dev/null; then
+    echo "PostgreSQL is not installed. Please install PostgreSQL first."
+    exit 1
+fi
+
+# Load environment variables from .env
+set -a
+[ -f .env ] && source .env
+set +a
+
+DB_NAME="${DB_NAME:-communitybook_db}"
+DB_USER="${DB_USER:-communitybook_user}"
+
+echo "Handing the tables of $DB_NAME to $DB_USER..."
+psql -d $DB_NAME -v ON_ERROR_STOP=1 -v db_user="$DB_USER" -f ownership.sql || exit 1
+
+echo "Database upgrade complete!"
+echo "The backend applies the remaining schema migrations the next time it starts."